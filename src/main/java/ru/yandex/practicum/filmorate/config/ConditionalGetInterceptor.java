@@ -0,0 +1,93 @@
+package ru.yandex.practicum.filmorate.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import ru.yandex.practicum.filmorate.storage.cache.EntityVersions;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Map;
+
+// условные GET-запросы к фильму, пользователю и списку популярных фильмов:
+// ETag строится по версии сущности, и если клиент прислал тот же ETag в If-None-Match,
+// ответ 304 отдается до обращения к контроллеру и загрузки данных из хранилища;
+// версии известны только своему узлу, поэтому при нескольких узлах условные запросы выключаются
+@Component
+public class ConditionalGetInterceptor implements HandlerInterceptor {
+
+    static final String FILM_PATTERN = "/films/{id}";
+    static final String USER_PATTERN = "/users/{id}";
+    static final String POPULAR_PATTERN = "/films/popular";
+
+    private final EntityVersions versions;
+    private final boolean enabled;
+
+    public ConditionalGetInterceptor(EntityVersions versions,
+                                     @Value("${filmorate.conditional-get.enabled:true}") boolean enabled) {
+        this.versions = versions;
+        this.enabled = enabled;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!enabled || !HttpMethod.GET.matches(request.getMethod())) {
+            return true;
+        }
+        final String eTag = getETag(request);
+        if (eTag == null) {
+            return true;
+        }
+        return !new ServletWebRequest(request, response).checkNotModified(eTag);
+    }
+
+    // включены ли условные GET-запросы
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // получить ETag списка популярных фильмов для версии
+    public static String popularETag(long version) {
+        return "\"popular-" + version + "\"";
+    }
+
+    // ---------------------------------------------
+    // ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ
+    // ---------------------------------------------
+
+    // получить ETag для запроса или null, если запрос не поддерживает условный GET
+    private String getETag(HttpServletRequest request) {
+        final Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        if (POPULAR_PATTERN.equals(pattern)) {
+            return popularETag(versions.getPopularVersion());
+        }
+        if (!FILM_PATTERN.equals(pattern) && !USER_PATTERN.equals(pattern)) {
+            return null;
+        }
+        final Integer id = getId(request);
+        if (id == null) {
+            return null;
+        }
+        return FILM_PATTERN.equals(pattern)
+                ? "\"film-" + id + "-" + versions.getFilmVersion(id) + "\""
+                : "\"user-" + id + "-" + versions.getUserVersion(id) + "\"";
+    }
+
+    // получить ID из пути запроса; некорректный ID обработает контроллер
+    @SuppressWarnings("unchecked")
+    private static Integer getId(HttpServletRequest request) {
+        final Map<String, String> variables = (Map<String, String>) request.getAttribute(
+                HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        if (variables == null || variables.get("id") == null) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(variables.get("id"));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -2,23 +2,44 @@ package ru.yandex.practicum.filmorate.controllers;
 
 import lombok.RequiredArgsConstructor;
 
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.config.ConditionalGetInterceptor;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmPatch;
+import ru.yandex.practicum.filmorate.model.ImportReport;
+import ru.yandex.practicum.filmorate.model.LikeMutation;
+import ru.yandex.practicum.filmorate.model.MutationAction;
+import ru.yandex.practicum.filmorate.model.MutationResult;
+import ru.yandex.practicum.filmorate.model.Page;
 import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.filmorate.service.ExportService;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.ImportService;
+import ru.yandex.practicum.filmorate.service.LikeIngestionService;
+import ru.yandex.practicum.filmorate.service.PopularFilmsCache;
 import ru.yandex.practicum.filmorate.service.ValidationService;
+import ru.yandex.practicum.filmorate.storage.cache.CachedValue;
 
 import javax.validation.Valid;
 import javax.validation.ValidationException;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 @RestController
@@ -29,11 +50,19 @@ public class FilmController {
 
     private final FilmService filmService;
     private final ValidationService validationService;
+    private final ExportService exportService;
+    private final ImportService importService;
+    private final LikeIngestionService likeIngestionService;
+    private final PopularFilmsCache popularFilmsCache;
+    private final ConditionalGetInterceptor conditionalGetInterceptor;
 
     @GetMapping("/{id}")
-    public Film get(@PathVariable int id) {
+    public ResponseEntity<Film> get(@PathVariable int id) {
         log.info("Get Film {}", id);
-        return filmService.get(id);
+        final CachedValue<Film> cached = filmService.getCached(id);
+        final ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        markStale(builder, cached);
+        return builder.body(cached.getValue());
     }
 
     @GetMapping
@@ -42,6 +71,28 @@ public class FilmController {
         return filmService.getAll();
     }
 
+    @GetMapping(params = "limit")
+    public Page<Film> getPage(@RequestParam int limit,
+                              @RequestParam(required = false) String after) {
+        log.info("Get films page: limit={}, after={}", limit, after);
+        return filmService.getPage(after, limit);
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export() {
+        log.info("Export all films");
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(exportService::exportFilms);
+    }
+
+    @PostMapping(value = "/import",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ImportReport importFilms(InputStream body) throws IOException {
+        log.info("Import films");
+        return importService.importFilms(body);
+    }
+
     @PostMapping
     public Film add(@Valid @RequestBody Film film) {
         log.info("Add film: {}", film);
@@ -61,30 +112,89 @@ public class FilmController {
         return filmService.update(film);
     }
 
+    @PatchMapping("/{id}")
+    public Film patch(@PathVariable int id,
+                      @Valid @RequestBody FilmPatch patch) {
+        log.info("Patch Film{}", id);
+        validationService.validate(patch);
+        return filmService.patch(id, patch);
+    }
+
     @PutMapping("/{id}/like/{userId}")
-    public Film addLike(@PathVariable int id,
-                        @PathVariable int userId) {
+    public ResponseEntity<Film> addLike(@PathVariable int id,
+                                        @PathVariable int userId) {
         log.info("User{} liked Film{}", userId, id);
-        return filmService.addLike(id, userId);
+        if (likeIngestionService.isEnabled()) {
+            likeIngestionService.submit(id, userId, MutationAction.ADD);
+            return ResponseEntity.accepted().build();
+        }
+        return ResponseEntity.ok(filmService.addLike(id, userId));
     }
 
     @DeleteMapping("/{id}/like/{userId}")
-    public Film removeLike(@PathVariable int id,
-                           @PathVariable int userId) {
+    public ResponseEntity<Film> removeLike(@PathVariable int id,
+                                           @PathVariable int userId) {
         log.info("User{} unliked Film{}", userId, id);
-        return filmService.removeLike(id, userId);
+        if (likeIngestionService.isEnabled()) {
+            likeIngestionService.submit(id, userId, MutationAction.REMOVE);
+            return ResponseEntity.accepted().build();
+        }
+        return ResponseEntity.ok(filmService.removeLike(id, userId));
+    }
+
+    @PostMapping("/likes")
+    public List<MutationResult> applyLikes(@RequestBody List<LikeMutation> mutations) {
+        log.info("Apply {} like operations", mutations.size());
+        return filmService.applyLikesBulk(mutations);
+    }
+
+    @GetMapping("/{id}/similar")
+    public List<Film> getSimilar(@PathVariable int id,
+                                 @RequestParam(defaultValue = "10") int count) {
+        log.info("Get films similar to Film{}", id);
+        return filmService.getSimilar(id, count);
     }
 
+    // готовый JSON из кеша записывается в ответ как есть, сжатый — если клиент принимает gzip;
+    // ETag соответствует версии списка, по которой собран ответ, и не ставится,
+    // если условные запросы выключены: иначе Spring сам ответил бы 304 по версии этого узла
     @GetMapping("/popular")
-    public List<Film> getTopFilms(
-            @RequestParam(defaultValue = "10", required = false) Integer count)
+    public ResponseEntity<byte[]> getTopFilms(
+            @RequestParam(defaultValue = "10", required = false) Integer count,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding)
             throws ValidationException {
         if (count <= 0) {
             throw new ValidationException("Параметр count должен быть положительным числом");
         }
 
         log.info("Get top {} films", count);
-        return filmService.getTopFilms(count);
+        final CachedValue<PopularFilmsCache.Response> cached = popularFilmsCache.getCached(count);
+        final PopularFilmsCache.Response response = cached.getValue();
+        final ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (!cached.isStale() && conditionalGetInterceptor.isEnabled()) {
+            builder.eTag(ConditionalGetInterceptor.popularETag(response.getVersion()));
+        }
+        markStale(builder, cached);
+        if (response.getGzip() != null && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(response.getGzip());
+        }
+        return builder.body(response.getJson());
     }
 
+    // ---------------------------------------------
+    // ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ
+    // ---------------------------------------------
+
+    // пометить ответ устаревшим, если база не успела ответить и отдано последнее удачное значение;
+    // ETag из ConditionalGetInterceptor соответствует текущей версии, а не отданной, поэтому
+    // такой ответ запрещено сохранять: иначе клиент получал бы 304 на устаревшие данные
+    private static void markStale(ResponseEntity.BodyBuilder builder, CachedValue<?> cached) {
+        if (cached.isStale()) {
+            builder.cacheControl(CacheControl.noStore())
+                    .header(HttpHeaders.WARNING, "110 - \"Response is Stale\"")
+                    .header(HttpHeaders.AGE, String.valueOf(cached.getAgeMs() / 1000));
+        }
+    }
 }
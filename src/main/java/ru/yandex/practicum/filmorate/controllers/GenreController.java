@@ -2,14 +2,18 @@ package ru.yandex.practicum.filmorate.controllers;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.service.GenreService;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/genres")
@@ -17,17 +21,29 @@ import java.util.List;
 @Slf4j
 public class GenreController {
 
+    private static final CacheControl CACHE_CONTROL = CacheControl.maxAge(1, TimeUnit.DAYS).cachePublic();
+
     private final GenreService genreService;
 
+    // справочник меняется редко: клиент может кешировать ответ и перепроверять его по ETag
     @GetMapping
-    public List<Genre> getAll() {
+    public ResponseEntity<List<Genre>> getAll(WebRequest request) {
         log.info("Get all genres");
-        return genreService.getAll();
+        final String eTag = genreService.getVersion();
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        return ResponseEntity.ok().cacheControl(CACHE_CONTROL).eTag(eTag).body(genreService.getAll());
     }
 
     @GetMapping("/{id}")
-    public Genre get(@PathVariable int id) {
+    public ResponseEntity<Genre> get(@PathVariable int id, WebRequest request) {
         log.info("Get Genre by ID={}", id);
-        return genreService.get(id);
+        final Genre value = genreService.get(id);
+        final String eTag = genreService.getVersion();
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        return ResponseEntity.ok().cacheControl(CACHE_CONTROL).eTag(eTag).body(value);
     }
 }
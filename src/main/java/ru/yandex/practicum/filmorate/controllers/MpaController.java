@@ -2,14 +2,18 @@ package ru.yandex.practicum.filmorate.controllers;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.service.MpaService;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/mpa")
@@ -17,18 +21,30 @@ import java.util.List;
 @Slf4j
 public class MpaController {
 
+    private static final CacheControl CACHE_CONTROL = CacheControl.maxAge(1, TimeUnit.DAYS).cachePublic();
+
     private final MpaService mpaService;
 
+    // справочник меняется редко: клиент может кешировать ответ и перепроверять его по ETag
     @GetMapping
-    public List<Mpa> getAll() {
+    public ResponseEntity<List<Mpa>> getAll(WebRequest request) {
         log.info("Get all MPA ratings");
-        return mpaService.getAll();
+        final String eTag = mpaService.getVersion();
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        return ResponseEntity.ok().cacheControl(CACHE_CONTROL).eTag(eTag).body(mpaService.getAll());
     }
 
     @GetMapping("/{id}")
-    public Mpa get(@PathVariable int id) {
+    public ResponseEntity<Mpa> get(@PathVariable int id, WebRequest request) {
         log.info("Get MPA rating by ID={}", id);
-        return mpaService.get(id);
+        final Mpa value = mpaService.get(id);
+        final String eTag = mpaService.getVersion();
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        return ResponseEntity.ok().cacheControl(CACHE_CONTROL).eTag(eTag).body(value);
     }
 
 }
@@ -1,17 +1,30 @@
 package ru.yandex.practicum.filmorate.controllers;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.FriendMutation;
+import ru.yandex.practicum.filmorate.model.FriendSuggestion;
+import ru.yandex.practicum.filmorate.model.MutationResult;
+import ru.yandex.practicum.filmorate.model.MutualFriends;
+import ru.yandex.practicum.filmorate.model.Page;
+import ru.yandex.practicum.filmorate.model.SimilarUser;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserPatch;
 
 import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.filmorate.service.ExportService;
 import ru.yandex.practicum.filmorate.service.UserService;
 import ru.yandex.practicum.filmorate.service.ValidationService;
 
@@ -26,6 +39,7 @@ public class UserController {
 
     private final UserService userService;
     private final ValidationService validationService;
+    private final ExportService exportService;
 
     @GetMapping("/{id}")
     public User get(@PathVariable int id) {
@@ -39,6 +53,21 @@ public class UserController {
         return userService.getAll();
     }
 
+    @GetMapping(params = "limit")
+    public Page<User> getPage(@RequestParam int limit,
+                              @RequestParam(required = false) String after) {
+        log.info("Get users page: limit={}, after={}", limit, after);
+        return userService.getPage(after, limit);
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export() {
+        log.info("Export all users");
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(exportService::exportUsers);
+    }
+
     @PostMapping
     public User add(@Valid @RequestBody User user) {
         log.info("Add user: {}", user);
@@ -58,6 +87,14 @@ public class UserController {
         return userService.update(user);
     }
 
+    @PatchMapping("/{id}")
+    public User patch(@PathVariable int id,
+                      @Valid @RequestBody UserPatch patch) {
+        log.info("Patch User{}", id);
+        validationService.validate(patch);
+        return userService.patch(id, patch);
+    }
+
     @PutMapping("/{id}/friends/{friendId}")
     public User addFriend(@PathVariable int id,
                           @PathVariable int friendId) {
@@ -72,17 +109,67 @@ public class UserController {
         return userService.removeFriend(id, friendId);
     }
 
+    @PostMapping("/friends")
+    public List<MutationResult> applyFriends(@RequestBody List<FriendMutation> mutations) {
+        log.info("Apply {} friend operations", mutations.size());
+        return userService.applyFriends(mutations);
+    }
+
+    @GetMapping("/{id}/friends/suggestions")
+    public List<FriendSuggestion> getSuggestions(@PathVariable int id,
+                                                 @RequestParam(defaultValue = "10") int count) {
+        log.info("Get friend suggestions for User{}", id);
+        return userService.getSuggestions(id, count);
+    }
+
+    @GetMapping("/{id}/similar")
+    public List<SimilarUser> getSimilarUsers(@PathVariable int id,
+                                             @RequestParam(defaultValue = "10") int count) {
+        log.info("Get users similar to User{}", id);
+        return userService.getSimilarUsers(id, count);
+    }
+
+    @GetMapping("/friends/common")
+    public List<User> getGroupCommonFriends(@RequestParam List<Integer> ids,
+                                            @RequestParam(defaultValue = "true") boolean withFriends) {
+        log.info("Get common friends of Users{}", ids);
+        return userService.getCommonFriends(ids, withFriends);
+    }
+
+    @GetMapping("/friends/common/count")
+    public MutualFriends countGroupCommonFriends(@RequestParam List<Integer> ids) {
+        log.info("Count common friends of Users{}", ids);
+        return userService.countCommonFriends(ids);
+    }
+
+    @GetMapping("/friends/mutual")
+    public List<MutualFriends> countMutualFriends(@RequestParam List<Integer> ids) {
+        log.info("Count mutual friends for each pair of Users{}", ids);
+        return userService.countMutualFriends(ids);
+    }
+
     @GetMapping("/{id}/friends")
-    public List<User> getFriends(@PathVariable int id) {
+    public List<User> getFriends(@PathVariable int id,
+                                 @RequestParam(defaultValue = "true") boolean withFriends) {
         log.info("Get friends of User{}", id);
-        return userService.getFriends(id);
+        return userService.getFriends(id, withFriends);
+    }
+
+    @GetMapping(value = "/{id}/friends", params = "limit")
+    public Page<User> getFriendsPage(@PathVariable int id,
+                                     @RequestParam int limit,
+                                     @RequestParam(required = false) String after,
+                                     @RequestParam(defaultValue = "true") boolean withFriends) {
+        log.info("Get friends page of User{}: limit={}, after={}", id, limit, after);
+        return userService.getFriendsPage(id, after, limit, withFriends);
     }
 
     @GetMapping("/{id}/friends/common/{otherId}")
     public List<User> getCommonFriends(@PathVariable int id,
-                                       @PathVariable int otherId) {
+                                       @PathVariable int otherId,
+                                       @RequestParam(defaultValue = "true") boolean withFriends) {
         log.info("Get common friends of User{} and User{}", id, otherId);
-        return userService.getCommonFriends(id, otherId);
+        return userService.getCommonFriends(id, otherId, withFriends);
 
     }
 }
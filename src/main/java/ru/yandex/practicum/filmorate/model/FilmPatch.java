@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.Positive;
+import javax.validation.constraints.Size;
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.Set;
+
+// частичное обновление фильма: запоминает, какие поля пришли в запросе,
+// чтобы в базу ушли только они
+@Getter
+@NoArgsConstructor
+public class FilmPatch {
+
+    public enum Field {
+        NAME,
+        DESCRIPTION,
+        RELEASE_DATE,
+        MPA,
+        DURATION,
+        GENRES
+    }
+
+    @Getter(AccessLevel.NONE)
+    private final Set<Field> changed = EnumSet.noneOf(Field.class);
+
+    private String name;
+
+    @Size(max = 200, message = "Описание не может превышать 200 символов")
+    private String description;
+
+    private LocalDate releaseDate;
+
+    private Mpa mpa;
+
+    @Positive(message = "Продолжительность фильма должна быть положительным числом")
+    private Integer duration;
+
+    private Set<Genre> genres;
+
+    public void setName(String name) {
+        this.name = name;
+        changed.add(Field.NAME);
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+        changed.add(Field.DESCRIPTION);
+    }
+
+    public void setReleaseDate(LocalDate releaseDate) {
+        this.releaseDate = releaseDate;
+        changed.add(Field.RELEASE_DATE);
+    }
+
+    public void setMpa(Mpa mpa) {
+        this.mpa = mpa;
+        changed.add(Field.MPA);
+    }
+
+    public void setDuration(Integer duration) {
+        this.duration = duration;
+        changed.add(Field.DURATION);
+    }
+
+    public void setGenres(Set<Genre> genres) {
+        this.genres = genres;
+        changed.add(Field.GENRES);
+    }
+
+    // передано ли поле в запросе (в том числе явным null)
+    public boolean isChanged(Field field) {
+        return changed.contains(field);
+    }
+
+    // есть ли изменения в колонках таблицы FILMS, без учета жанров
+    public boolean hasColumnChanges() {
+        return changed.stream().anyMatch(field -> field != Field.GENRES);
+    }
+}
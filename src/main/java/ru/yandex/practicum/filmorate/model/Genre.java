@@ -1,19 +1,22 @@
 package ru.yandex.practicum.filmorate.model;
 
-import lombok.AllArgsConstructor;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Getter;
-import lombok.NoArgsConstructor;
-import lombok.Setter;
 
 import java.util.Objects;
 
+// жанр не изменяется: экземпляры из справочника общие для всех фильмов
 @Getter
-@Setter
-@NoArgsConstructor
-@AllArgsConstructor
 public class Genre {
-    private int id;
-    private String name;
+    private final int id;
+    private final String name;
+
+    @JsonCreator
+    public Genre(@JsonProperty("id") int id, @JsonProperty("name") String name) {
+        this.id = id;
+        this.name = name;
+    }
 
     @Override
     public boolean equals(Object o) {
@@ -0,0 +1,18 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+@Getter
+@RequiredArgsConstructor
+public class ImportReport {
+
+    private final int imported;
+
+    private final int failed;
+
+    private final List<MutationResult> errors;
+
+}
@@ -1,15 +1,18 @@
 package ru.yandex.practicum.filmorate.model;
 
-import lombok.AllArgsConstructor;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Getter;
-import lombok.NoArgsConstructor;
-import lombok.Setter;
 
+// рейтинг MPA не изменяется: экземпляры из справочника общие для всех фильмов
 @Getter
-@Setter
-@NoArgsConstructor
-@AllArgsConstructor
 public class Mpa {
-    private int id;
-    private String name;
+    private final int id;
+    private final String name;
+
+    @JsonCreator
+    public Mpa(@JsonProperty("id") int id, @JsonProperty("name") String name) {
+        this.id = id;
+        this.name = name;
+    }
 }
@@ -0,0 +1,25 @@
+package ru.yandex.practicum.filmorate.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MutationResult {
+
+    private final int index;
+
+    private final MutationStatus status;
+
+    private final String error;
+
+    public static MutationResult of(int index, boolean changed) {
+        return new MutationResult(index, changed ? MutationStatus.APPLIED : MutationStatus.UNCHANGED, null);
+    }
+
+    public static MutationResult failed(int index, String error) {
+        return new MutationResult(index, MutationStatus.FAILED, error);
+    }
+}
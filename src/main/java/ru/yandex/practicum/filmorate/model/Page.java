@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+@RequiredArgsConstructor
+@Getter
+public class Page<T> {
+
+    private final List<T> items;
+
+    // курсор следующей страницы; null, если страница последняя
+    private final String nextCursor;
+
+}
@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.Email;
+import javax.validation.constraints.PastOrPresent;
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.Set;
+
+// частичное обновление пользователя: запоминает, какие поля пришли в запросе,
+// чтобы в базу ушли только они
+@Getter
+@NoArgsConstructor
+public class UserPatch {
+
+    public enum Field {
+        EMAIL,
+        LOGIN,
+        NAME,
+        BIRTHDAY
+    }
+
+    @Getter(AccessLevel.NONE)
+    private final Set<Field> changed = EnumSet.noneOf(Field.class);
+
+    @Email(message = "Проверьте написание адреса электронной почты")
+    private String email;
+
+    private String login;
+
+    private String name;
+
+    @PastOrPresent(message = "Дата рождения не может быть в будущем")
+    private LocalDate birthday;
+
+    public void setEmail(String email) {
+        this.email = email;
+        changed.add(Field.EMAIL);
+    }
+
+    public void setLogin(String login) {
+        this.login = login;
+        changed.add(Field.LOGIN);
+    }
+
+    public void setName(String name) {
+        this.name = name;
+        changed.add(Field.NAME);
+    }
+
+    public void setBirthday(LocalDate birthday) {
+        this.birthday = birthday;
+        changed.add(Field.BIRTHDAY);
+    }
+
+    // передано ли поле в запросе (в том числе явным null)
+    public boolean isChanged(Field field) {
+        return changed.contains(field);
+    }
+
+    // есть ли в запросе хоть одно поле
+    public boolean hasChanges() {
+        return !changed.isEmpty();
+    }
+}
@@ -0,0 +1,21 @@
+package ru.yandex.practicum.filmorate.service;
+
+import javax.validation.ValidationException;
+import java.util.List;
+
+// ограничения пакетных операций
+final class BulkMutations {
+
+    static final int MAX_BATCH_SIZE = 1000;
+
+    private BulkMutations() {
+    }
+
+    // проверить размер пакета
+    static void checkSize(List<?> mutations) {
+        if (mutations == null || mutations.isEmpty() || mutations.size() > MAX_BATCH_SIZE) {
+            throw new ValidationException(
+                    String.format("Пакет должен содержать от 1 до %d операций", MAX_BATCH_SIZE));
+        }
+    }
+}
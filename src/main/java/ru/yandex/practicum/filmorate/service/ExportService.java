@@ -0,0 +1,56 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+@Service
+@RequiredArgsConstructor
+public class ExportService {
+
+    private static final byte LINE_SEPARATOR = '\n';
+
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+    private final ObjectMapper objectMapper;
+
+    // выгрузить все фильмы в формате NDJSON
+    public void exportFilms(OutputStream out) throws IOException {
+        export(out, filmStorage::streamAll);
+    }
+
+    // выгрузить всех пользователей в формате NDJSON
+    public void exportUsers(OutputStream out) throws IOException {
+        export(out, userStorage::streamAll);
+    }
+
+    // ---------------------------------------------
+    // ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ
+    // ---------------------------------------------
+
+    // записать каждую сущность отдельной строкой сразу по мере чтения из базы
+    private <T> void export(OutputStream out, Consumer<Consumer<T>> source) throws IOException {
+        final ObjectWriter writer = objectMapper.writer();
+        try {
+            source.accept(entity -> {
+                try {
+                    out.write(writer.writeValueAsBytes(entity));
+                    out.write(LINE_SEPARATOR);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        out.flush();
+    }
+}
@@ -1,101 +1,280 @@
 package ru.yandex.practicum.filmorate.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.EntityNotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmPatch;
+import ru.yandex.practicum.filmorate.model.LikeMutation;
+import ru.yandex.practicum.filmorate.model.MutationAction;
+import ru.yandex.practicum.filmorate.model.MutationResult;
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.storage.cache.CachedValue;
+import ru.yandex.practicum.filmorate.storage.cache.EntityVersions;
+import ru.yandex.practicum.filmorate.storage.cache.FilmCache;
+import ru.yandex.practicum.filmorate.storage.cache.SingleFlight;
+import ru.yandex.practicum.filmorate.storage.index.FilmLeaderboard;
+import ru.yandex.practicum.filmorate.storage.index.FilmSimilarityIndex;
+import ru.yandex.practicum.filmorate.storage.index.LikeGraph;
+import ru.yandex.practicum.filmorate.storage.index.UserSimilarityIndex;
 
+import javax.validation.ValidationException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class FilmService {
 
-    private int nextId = 1;
+    private static final String FILM_CURSOR = "film";
+    private static final int LOCK_STRIPES = 64;
     private final FilmStorage filmStorage;
     private final UserStorage userStorage;
+    private final FilmLeaderboard leaderboard;
+    private final LikeGraph likeGraph;
+    private final FilmSimilarityIndex similarityIndex;
+    private final UserSimilarityIndex userSimilarityIndex;
+    private final FilmCache filmCache;
+    private final EntityVersions versions;
+    private final SingleFlight singleFlight;
+    private final StripedLocks likeLocks = new StripedLocks(LOCK_STRIPES);
 
 
-    // получить фильм
+    // получить фильм; полностью загруженный фильм берется из кеша
     public Film get(int filmId) {
-        Film film = filmStorage.get(filmId);
+        Film film = filmCache.get(filmId, this::load);
         if (film == null) {
             throw new EntityNotFoundException(String.format("Не найден фильм с id %d", filmId), Film.class);
         }
         return film;
     }
 
+    // получить фильм вместе с признаком устаревания: если база не успела ответить,
+    // отдается последняя удачная версия фильма из кеша
+    public CachedValue<Film> getCached(int filmId) {
+        CachedValue<Film> cached = filmCache.getCached(filmId, this::load);
+        if (cached.getValue() == null) {
+            throw new EntityNotFoundException(String.format("Не найден фильм с id %d", filmId), Film.class);
+        }
+        return cached;
+    }
+
     // получить все фильмы
     public List<Film> getAll() {
         return filmStorage.getAll();
     }
 
+    // получить страницу фильмов
+    public Page<Film> getPage(String after, int limit) {
+        PageCursors.checkLimit(limit);
+        int afterId = PageCursors.decode(after, FILM_CURSOR);
+        List<Film> films = filmStorage.getPage(afterId, limit + 1);
+        return PageCursors.toPage(films, limit, Film::getId, FILM_CURSOR);
+    }
+
     // добавить фильм
     public Film add(Film film) {
-        film.setId(nextId++);
         filmStorage.add(film);
+        leaderboard.put(film.getId(), film.getTotalLikes());
+        versions.onPopularChanged();
         return film;
     }
 
-    // обновить данные о фильме
+    // добавить пачку фильмов
+    public void addAll(List<Film> films) {
+        filmStorage.addAll(films);
+        for (Film film : films) {
+            leaderboard.put(film.getId(), film.getTotalLikes());
+        }
+        versions.onPopularChanged();
+    }
+
+    // обновить данные о фильме; фильм без ID добавляется как новый;
+    // наличие фильма проверяется по числу обновленных строк, без предварительного чтения
     public Film update(Film film) {
-        checkIdOnUpdate(film);
-        filmStorage.update(film);
+        if (film.getId() == null) {
+            return add(film);
+        }
+        if (!filmStorage.update(film)) {
+            throw new EntityNotFoundException(String.format("Не найден фильм с id %d", film.getId()), Film.class);
+        }
+        filmCache.invalidate(film.getId());
+        versions.onFilmChanged(film.getId());
         return film;
     }
 
-    // поставить лайк
+    // частично обновить фильм: в базу уходят только переданные поля и изменившиеся жанры
+    public Film patch(int filmId, FilmPatch patch) {
+        if (!filmStorage.patch(filmId, patch)) {
+            throw new EntityNotFoundException(String.format("Не найден фильм с id %d", filmId), Film.class);
+        }
+        filmCache.invalidate(filmId);
+        versions.onFilmChanged(filmId);
+        return get(filmId);
+    }
+
+    // поставить лайк; в ответе фильм без списка лайков
     public Film addLike(int filmId, int userId) {
-        Film film = get(filmId);
-        User user = getUser(userId);
+        try {
+            changeLike(filmId, userId, MutationAction.ADD, () -> filmStorage.addLike(filmId, userId));
+        } catch (DataIntegrityViolationException e) {
+            checkFilmExists(filmId);
+            checkUserExists(userId);
+            throw e;
+        }
+        return getWithoutLikes(filmId);
+    }
 
-        film.getLikes().add(user.getId());
-        film.setTotalLikes(film.getLikes().size());
-        filmStorage.update(film);
-        filmStorage.addLike(film.getId(), user.getId());
+    // удалить лайк; в ответе фильм без списка лайков
+    public Film removeLike(int filmId, int userId) {
+        boolean removed = changeLike(filmId, userId, MutationAction.REMOVE,
+                () -> filmStorage.removeLike(filmId, userId));
+        Film film = getWithoutLikes(filmId);
+        if (!removed) {
+            checkUserExists(userId);
+        }
         return film;
     }
 
-    // удалить лайк
-    public Film removeLike(int filmId, int userId) {
-        Film film = get(filmId);
-        User user = getUser(userId);
+    // применить пакет лайков: ID проверяются одним запросом на таблицу,
+    // изменения пишутся одной транзакцией; в ответе результат по каждой операции
+    public List<MutationResult> applyLikes(List<LikeMutation> mutations) {
+        Set<Integer> filmIds = new HashSet<>();
+        Set<Integer> userIds = new HashSet<>();
+        for (LikeMutation mutation : mutations) {
+            filmIds.add(mutation.getFilmId());
+            userIds.add(mutation.getUserId());
+        }
+        Set<Integer> existingFilms = filmStorage.getExistingIds(filmIds);
+        Set<Integer> existingUsers = userStorage.getExistingIds(userIds);
 
-        film.getLikes().remove(user.getId());
-        film.setTotalLikes(film.getLikes().size());
-        filmStorage.update(film);
-        filmStorage.removeLike(film.getId(), user.getId());
-        return film;
+        MutationResult[] results = new MutationResult[mutations.size()];
+        List<Integer> indexes = new ArrayList<>();
+        List<LikeMutation> valid = new ArrayList<>();
+        for (int i = 0; i < mutations.size(); i++) {
+            LikeMutation mutation = mutations.get(i);
+            if (mutation.getAction() == null) {
+                results[i] = MutationResult.failed(i, "Не указано действие");
+            } else if (!existingFilms.contains(mutation.getFilmId())) {
+                results[i] = MutationResult.failed(i,
+                        String.format("Не найден фильм с id %d", mutation.getFilmId()));
+            } else if (!existingUsers.contains(mutation.getUserId())) {
+                results[i] = MutationResult.failed(i,
+                        String.format("Не найден пользователь с id %d", mutation.getUserId()));
+            } else {
+                indexes.add(i);
+                valid.add(mutation);
+            }
+        }
+
+        if (!valid.isEmpty()) {
+            int[] lockedUsers = valid.stream().mapToInt(LikeMutation::getUserId).toArray();
+            boolean[] changed = likeLocks.withLocks(lockedUsers, () -> {
+                boolean[] applied = filmStorage.applyLikes(valid);
+                for (int i = 0; i < applied.length; i++) {
+                    if (applied[i]) {
+                        LikeMutation mutation = valid.get(i);
+                        onLikeChanged(mutation.getFilmId(), mutation.getUserId(), mutation.getAction());
+                    }
+                }
+                return applied;
+            });
+            for (int i = 0; i < changed.length; i++) {
+                results[indexes.get(i)] = MutationResult.of(indexes.get(i), changed[i]);
+            }
+        }
+        return Arrays.asList(results);
     }
 
-    // получить список самых популярных фильмов
+    // применить пакет лайков, переданный клиентом
+    public List<MutationResult> applyLikesBulk(List<LikeMutation> mutations) {
+        BulkMutations.checkSize(mutations);
+        return applyLikes(mutations);
+    }
+
+    // получить список самых популярных фильмов из рейтинга в памяти;
+    // одновременные запросы с одинаковым размером списка загружают его один раз
     public List<Film> getTopFilms(Integer size) {
-        return filmStorage.getTopFilms(size);
+        return singleFlight.execute("popular-films", size, () -> filmStorage.getByIds(leaderboard.getTop(size)));
+    }
+
+    // получить фильмы, которые чаще всего лайкают вместе с этим
+    public List<Film> getSimilar(int filmId, int count) {
+        if (count <= 0 || count > similarityIndex.getTopK()) {
+            throw new ValidationException(
+                    String.format("Параметр count должен быть от 1 до %d", similarityIndex.getTopK()));
+        }
+        checkFilmExists(filmId);
+        int[] similar = similarityIndex.getSimilar(filmId, count);
+        return filmStorage.getByIds(Arrays.stream(similar).boxed().collect(Collectors.toList()));
     }
 
     // ---------------------------------------------
     // ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ
     // ---------------------------------------------
 
-    // проверить ID при обновлении
-    private void checkIdOnUpdate(Film film) {
-        if (film.getId() == null) {
-            add(film);
+    // загрузить фильм из базы; одновременные загрузки одного фильма выполняются один раз
+    private Film load(int filmId) {
+        return singleFlight.execute("film", filmId, () -> filmStorage.get(filmId));
+    }
+
+    // изменить лайк в базе и, если он действительно изменился, обновить индексы;
+    // под блокировкой пользователя, иначе одновременные лайк и отмена одной пары
+    // могли бы примениться к индексам в порядке, обратном порядку записи в базу
+    private boolean changeLike(int filmId, int userId, MutationAction action, BooleanSupplier statement) {
+        return likeLocks.withLock(userId, () -> {
+            boolean changed = statement.getAsBoolean();
+            if (changed) {
+                onLikeChanged(filmId, userId, action);
+            }
+            return changed;
+        });
+    }
+
+    // обновить индексы в памяти после того, как лайк действительно изменился в базе
+    private void onLikeChanged(int filmId, int userId, MutationAction action) {
+        if (action == MutationAction.ADD) {
+            leaderboard.changeLikes(filmId, 1);
+            likeGraph.addLike(filmId, userId);
+        } else {
+            leaderboard.changeLikes(filmId, -1);
+            likeGraph.removeLike(filmId, userId);
         }
-        if (filmStorage.get(film.getId()) == null) {
-            throw new EntityNotFoundException(String.format("Не найден фильм с id %d", film.getId()), Film.class);
+        similarityIndex.onLikeChanged(filmId, userId);
+        userSimilarityIndex.onLikesChanged(userId);
+        filmCache.onLikeChanged(filmId, userId, action);
+        versions.onFilmChanged(filmId);
+    }
+
+    // получить фильм без списка лайков
+    private Film getWithoutLikes(int filmId) {
+        Film film = filmStorage.get(filmId, false);
+        if (film == null) {
+            throw new EntityNotFoundException(String.format("Не найден фильм с id %d", filmId), Film.class);
+        }
+        return film;
+    }
+
+    // проверить, что фильм есть в базе
+    private void checkFilmExists(int filmId) {
+        if (!filmStorage.exists(filmId)) {
+            throw new EntityNotFoundException(String.format("Не найден фильм с id %d", filmId), Film.class);
         }
     }
 
-    // получить пользователя по ID
-    private User getUser(int id) {
-        User user = userStorage.get(id);
-        if (user == null) {
-            throw new EntityNotFoundException(String.format("Не найден пользователь с id %d", id), User.class);
+    // проверить, что пользователь есть в базе
+    private void checkUserExists(int userId) {
+        if (!userStorage.exists(userId)) {
+            throw new EntityNotFoundException(String.format("Не найден пользователь с id %d", userId), User.class);
         }
-        return user;
     }
 }
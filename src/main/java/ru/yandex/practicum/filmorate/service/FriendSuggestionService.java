@@ -0,0 +1,173 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.model.FriendSuggestion;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.storage.index.FriendGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// «возможно, вы знакомы»: друзья друзей, которых еще нет в друзьях,
+// по убыванию числа общих друзей. Обход графа ограничен, результат кешируется
+// и проверяется при чтении: он устарел, если после его подсчета менялся список друзей
+// самого пользователя или одного из обойденных друзей
+@Service
+@Slf4j
+public class FriendSuggestionService {
+
+    // сколько подсказок считается и хранится в кеше на пользователя
+    static final int MAX_SUGGESTIONS = 50;
+
+    // сколько ячеек в таблице изменений списков друзей; пользователи, попавшие в одну ячейку,
+    // лишь иногда лишний раз пересчитывают подсказки друг друга
+    private static final int CHANGE_SLOTS = 1 << 16;
+
+    private final FriendGraph friendGraph;
+    private final UserStorage userStorage;
+    private final int maxFanOut;
+    private final int maxCandidates;
+
+    private final Cache<Integer, Suggestions> cache;
+
+    // логические часы и момент последнего изменения списка друзей по ячейкам пользователей
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicLongArray changedAt = new AtomicLongArray(CHANGE_SLOTS);
+
+    public FriendSuggestionService(FriendGraph friendGraph,
+                                   UserStorage userStorage,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${filmorate.friends.suggestions.max-fan-out:500}") int maxFanOut,
+                                   @Value("${filmorate.friends.suggestions.max-candidates:10000}") int maxCandidates,
+                                   @Value("${filmorate.cache.suggestions.max-size:10000}") long maxSize) {
+        this.friendGraph = friendGraph;
+        this.userStorage = userStorage;
+        this.maxFanOut = maxFanOut;
+        this.maxCandidates = maxCandidates;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "friend-suggestions");
+    }
+
+    // получить подсказки для пользователя
+    public List<FriendSuggestion> getSuggestions(int userId, int count) {
+        Suggestions suggestions = cache.getIfPresent(userId);
+        if (suggestions == null || !isFresh(userId, suggestions)) {
+            suggestions = compute(userId, clock.get());
+            // из двух одновременно посчитанных результатов в кеше остается более поздний
+            cache.asMap().merge(userId, suggestions,
+                    (cached, computed) -> cached.computedAt >= computed.computedAt ? cached : computed);
+        }
+
+        final int size = Math.min(count, suggestions.userIds.length);
+        final List<Integer> ids = new ArrayList<>(size);
+        final Map<Integer, Integer> mutualCounts = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            ids.add(suggestions.userIds[i]);
+            mutualCounts.put(suggestions.userIds[i], suggestions.mutualCounts[i]);
+        }
+
+        final List<FriendSuggestion> result = new ArrayList<>(size);
+        for (User user : userStorage.getByIds(ids, false)) {
+            result.add(new FriendSuggestion(user, mutualCounts.get(user.getId())));
+        }
+        return result;
+    }
+
+    // отметить изменение списка друзей пользователя, уже примененное к графу: подсказки
+    // его самого и всех, у кого он в друзьях, пересчитаются при следующем чтении
+    public void invalidate(int userId) {
+        changedAt.accumulateAndGet(getSlot(userId), clock.incrementAndGet(), Math::max);
+    }
+
+    // получить статистику кеша подсказок
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    // ---------------------------------------------
+    // ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ
+    // ---------------------------------------------
+
+    // проверить, что после подсчета подсказок не менялись списки друзей, по которым они посчитаны
+    private boolean isFresh(int userId, Suggestions suggestions) {
+        if (changedAt.get(getSlot(userId)) > suggestions.computedAt) {
+            return false;
+        }
+        for (int friendId : suggestions.sourceIds) {
+            if (changedAt.get(getSlot(friendId)) > suggestions.computedAt) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ячейка пользователя в таблице изменений
+    private int getSlot(int userId) {
+        return Math.floorMod(userId * 0x9E3779B9, CHANGE_SLOTS);
+    }
+
+    // посчитать подсказки: обходится не больше maxFanOut друзей и не больше maxFanOut
+    // друзей каждого из них, а новых кандидатов набирается не больше maxCandidates
+    private Suggestions compute(int userId, long computedAt) {
+        final int[] friends = friendGraph.getFriends(userId);
+        final int[] sourceIds = Arrays.copyOf(friends, Math.min(friends.length, maxFanOut));
+        final Map<Integer, Integer> mutualCounts = new HashMap<>();
+        for (int i = 0; i < sourceIds.length; i++) {
+            final int[] friendsOfFriend = friendGraph.getFriends(friends[i]);
+            for (int j = 0; j < Math.min(friendsOfFriend.length, maxFanOut); j++) {
+                int candidate = friendsOfFriend[j];
+                if (candidate == userId || Arrays.binarySearch(friends, candidate) >= 0) {
+                    continue;
+                }
+                if (mutualCounts.size() < maxCandidates || mutualCounts.containsKey(candidate)) {
+                    mutualCounts.merge(candidate, 1, Integer::sum);
+                }
+            }
+        }
+
+        final List<Map.Entry<Integer, Integer>> ranked = new ArrayList<>(mutualCounts.entrySet());
+        ranked.sort(Map.Entry.<Integer, Integer>comparingByValue().reversed()
+                .thenComparing(Map.Entry.comparingByKey()));
+        final int size = Math.min(ranked.size(), MAX_SUGGESTIONS);
+        final int[] userIds = new int[size];
+        final int[] counts = new int[size];
+        for (int i = 0; i < size; i++) {
+            userIds[i] = ranked.get(i).getKey();
+            counts[i] = ranked.get(i).getValue();
+        }
+        log.debug("Friend suggestions for User{}: {} candidates scored", userId, mutualCounts.size());
+        return new Suggestions(userIds, counts, sourceIds, computedAt);
+    }
+
+    private static class Suggestions {
+
+        private final int[] userIds;
+        private final int[] mutualCounts;
+        // обойденные друзья и показание часов перед подсчетом
+        private final int[] sourceIds;
+        private final long computedAt;
+
+        private Suggestions(int[] userIds, int[] mutualCounts, int[] sourceIds, long computedAt) {
+            this.userIds = userIds;
+            this.mutualCounts = mutualCounts;
+            this.sourceIds = sourceIds;
+            this.computedAt = computedAt;
+        }
+    }
+}
@@ -18,6 +18,10 @@ public class GenreService {
         return genreStorage.getAll();
     }
 
+    public String getVersion() {
+        return genreStorage.getVersion();
+    }
+
     public Genre get(int id) {
         Genre genre = genreStorage.get(id);
         if (genre == null) {
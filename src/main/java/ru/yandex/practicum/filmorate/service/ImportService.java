@@ -0,0 +1,132 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.ImportReport;
+import ru.yandex.practicum.filmorate.model.MutationResult;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.ValidationException;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// потоковая загрузка каталога: фильмы читаются из тела запроса по одному
+// и пишутся в базу пачками, поэтому память не зависит от размера файла
+@Service
+@Slf4j
+public class ImportService {
+
+    // сколько ошибок попадает в отчет; остальные только считаются
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    private final FilmService filmService;
+    private final ValidationService validationService;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+
+    public ImportService(FilmService filmService,
+                         ValidationService validationService,
+                         Validator validator,
+                         ObjectMapper objectMapper,
+                         @Value("${filmorate.import.chunk-size:1000}") int chunkSize) {
+        this.filmService = filmService;
+        this.validationService = validationService;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+    }
+
+    // загрузить фильмы из JSON-массива или NDJSON; некорректные фильмы пропускаются
+    // и попадают в отчет, а уже записанные пачки остаются в базе даже при ошибке разбора
+    public ImportReport importFilms(InputStream in) throws IOException {
+        final Set<Integer> mpaIds = validationService.getMpaIds();
+        final Set<Integer> genreIds = validationService.getGenreIds();
+        final List<MutationResult> errors = new ArrayList<>();
+        List<Film> chunk = new ArrayList<>(chunkSize);
+        int imported = 0;
+        int failed = 0;
+        int index = 0;
+
+        try (JsonParser parser = objectMapper.createParser(in)) {
+            JsonToken token = parser.nextToken();
+            final boolean array = token == JsonToken.START_ARRAY;
+            if (array) {
+                token = parser.nextToken();
+            }
+            while (token != null && !(array && token == JsonToken.END_ARRAY)) {
+                final JsonNode node = parser.readValueAsTree();
+                final String error = readFilm(node, mpaIds, genreIds, chunk);
+                if (error != null) {
+                    failed++;
+                    if (errors.size() < MAX_REPORTED_ERRORS) {
+                        errors.add(MutationResult.failed(index, error));
+                    }
+                }
+                if (chunk.size() == chunkSize) {
+                    filmService.addAll(chunk);
+                    imported += chunk.size();
+                    chunk = new ArrayList<>(chunkSize);
+                }
+                index++;
+                token = parser.nextToken();
+            }
+        } catch (JsonParseException e) {
+            log.warn("Film import stopped at item {}: {}", index, e.getOriginalMessage());
+            throw new ValidationException(String.format(
+                    "Некорректный JSON в строке %d; загружено фильмов: %d",
+                    e.getLocation().getLineNr(), imported));
+        }
+
+        filmService.addAll(chunk);
+        imported += chunk.size();
+        log.info("Imported {} films, {} rejected", imported, failed);
+        return new ImportReport(imported, failed, errors);
+    }
+
+    // ---------------------------------------------
+    // ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ
+    // ---------------------------------------------
+
+    // разобрать и проверить фильм; корректный фильм добавляется в пачку,
+    // для некорректного возвращается текст ошибки
+    private String readFilm(JsonNode node, Set<Integer> mpaIds, Set<Integer> genreIds, List<Film> chunk) {
+        final Film film;
+        try {
+            film = objectMapper.treeToValue(node, Film.class);
+        } catch (JsonProcessingException e) {
+            return "Некорректные данные фильма";
+        }
+        if (film == null) {
+            return "Некорректные данные фильма";
+        }
+
+        final Set<ConstraintViolation<Film>> violations = validator.validate(film);
+        if (!violations.isEmpty()) {
+            return violations.iterator().next().getMessage();
+        }
+        try {
+            validationService.validate(film, mpaIds, genreIds);
+        } catch (ValidationException e) {
+            return e.getMessage();
+        }
+
+        film.setId(null);
+        film.setLikes(new HashSet<>());
+        chunk.add(film);
+        return null;
+    }
+}
@@ -0,0 +1,169 @@
+package ru.yandex.practicum.filmorate.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exception.TooManyRequestsException;
+import ru.yandex.practicum.filmorate.model.LikeMutation;
+import ru.yandex.practicum.filmorate.model.MutationAction;
+import ru.yandex.practicum.filmorate.model.MutationResult;
+import ru.yandex.practicum.filmorate.model.MutationStatus;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// асинхронный прием лайков: запрос только ставит операцию в ограниченную очередь,
+// а фоновая выгрузка пишет накопившиеся операции в базу одним пакетом
+@Service
+@Slf4j
+public class LikeIngestionService {
+
+    private final FilmService filmService;
+    private final boolean enabled;
+    private final long offerTimeoutMs;
+    private final int drainBatchSize;
+    private final BlockingQueue<QueuedLike> queue;
+
+    private final Counter acceptedCounter;
+    private final Counter rejectedCounter;
+    private final Counter coalescedCounter;
+    private final Counter failedCounter;
+    private final Timer lagTimer;
+
+
+    public LikeIngestionService(FilmService filmService,
+                                MeterRegistry meterRegistry,
+                                @Value("${filmorate.likes.async.enabled:false}") boolean enabled,
+                                @Value("${filmorate.likes.async.queue-capacity:10000}") int queueCapacity,
+                                @Value("${filmorate.likes.async.offer-timeout-ms:50}") long offerTimeoutMs,
+                                @Value("${filmorate.likes.async.drain-batch-size:1000}") int drainBatchSize) {
+        this.filmService = filmService;
+        this.enabled = enabled;
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.drainBatchSize = drainBatchSize;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        meterRegistry.gauge("filmorate.likes.queue.depth", queue, BlockingQueue::size);
+        meterRegistry.gauge("filmorate.likes.queue.lag.ms", this, LikeIngestionService::getLagMillis);
+        this.acceptedCounter = meterRegistry.counter("filmorate.likes.queue.accepted");
+        this.rejectedCounter = meterRegistry.counter("filmorate.likes.queue.rejected");
+        this.coalescedCounter = meterRegistry.counter("filmorate.likes.queue.coalesced");
+        this.failedCounter = meterRegistry.counter("filmorate.likes.queue.failed");
+        this.lagTimer = meterRegistry.timer("filmorate.likes.queue.write.lag");
+    }
+
+    // включен ли асинхронный прием лайков
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // поставить операцию в очередь; если очередь не освободилась за отведенное время — отказать
+    public void submit(int filmId, int userId, MutationAction action) {
+        final QueuedLike like = new QueuedLike(new LikeMutation(filmId, userId, action), System.nanoTime());
+        final boolean accepted;
+        try {
+            accepted = queue.offer(like, offerTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TooManyRequestsException("Очередь лайков недоступна, повторите запрос позже");
+        }
+        if (!accepted) {
+            rejectedCounter.increment();
+            throw new TooManyRequestsException("Очередь лайков переполнена, повторите запрос позже");
+        }
+        acceptedCounter.increment();
+    }
+
+    // получить число операций в очереди
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    // выгрузить очередь в базу: операции одной пары (фильм, пользователь)
+    // схлопываются в одну — последнюю по времени; ошибка пакета не прерывает выгрузку
+    @Scheduled(fixedDelayString = "${filmorate.likes.async.drain-interval-ms:100}")
+    @PreDestroy
+    public synchronized void drain() {
+        final List<QueuedLike> drained = new ArrayList<>();
+        while (queue.drainTo(drained, drainBatchSize) > 0) {
+            final Map<Long, LikeMutation> latest = new LinkedHashMap<>();
+            for (QueuedLike like : drained) {
+                LikeMutation mutation = like.mutation;
+                long key = ((long) mutation.getFilmId() << 32) | (mutation.getUserId() & 0xffffffffL);
+                latest.remove(key);
+                latest.put(key, mutation);
+            }
+            coalescedCounter.increment(drained.size() - latest.size());
+
+            apply(new ArrayList<>(latest.values()));
+
+            final long now = System.nanoTime();
+            for (QueuedLike like : drained) {
+                lagTimer.record(now - like.enqueuedAt, TimeUnit.NANOSECONDS);
+            }
+            log.debug("Drained like queue: {} operations, {} writes", drained.size(), latest.size());
+            drained.clear();
+        }
+    }
+
+    // ---------------------------------------------
+    // ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ
+    // ---------------------------------------------
+
+    // записать пакет операций; если пакет не записался (например, лайк уже добавлен синхронным
+    // запросом или фильм удален), записать операции по одной, чтобы не потерять остальные
+    private void apply(List<LikeMutation> mutations) {
+        try {
+            logFailed(filmService.applyLikes(mutations));
+            return;
+        } catch (RuntimeException e) {
+            log.warn("Queued like batch of {} failed, applying one by one", mutations.size(), e);
+        }
+        for (LikeMutation mutation : mutations) {
+            try {
+                logFailed(filmService.applyLikes(List.of(mutation)));
+            } catch (RuntimeException e) {
+                failedCounter.increment();
+                log.error("Queued like lost: film {}, user {}, {}",
+                        mutation.getFilmId(), mutation.getUserId(), mutation.getAction(), e);
+            }
+        }
+    }
+
+    // записать в журнал операции, пропущенные из-за неверных данных
+    private void logFailed(List<MutationResult> results) {
+        for (MutationResult result : results) {
+            if (result.getStatus() == MutationStatus.FAILED) {
+                failedCounter.increment();
+                log.warn("Queued like skipped: {}", result.getError());
+            }
+        }
+    }
+
+    // получить возраст самой старой операции в очереди
+    private double getLagMillis() {
+        final QueuedLike head = queue.peek();
+        return head == null ? 0 : (System.nanoTime() - head.enqueuedAt) / 1_000_000.0;
+    }
+
+    private static class QueuedLike {
+
+        private final LikeMutation mutation;
+        private final long enqueuedAt;
+
+        private QueuedLike(LikeMutation mutation, long enqueuedAt) {
+            this.mutation = mutation;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
@@ -18,6 +18,10 @@ public class MpaService {
         return mpaStorage.getAll();
     }
 
+    public String getVersion() {
+        return mpaStorage.getVersion();
+    }
+
     public Mpa get(int id) {
         Mpa mpa = mpaStorage.get(id);
         if (mpa == null) {
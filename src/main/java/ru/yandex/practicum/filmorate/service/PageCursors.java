@@ -0,0 +1,60 @@
+package ru.yandex.practicum.filmorate.service;
+
+import ru.yandex.practicum.filmorate.model.Page;
+
+import javax.validation.ValidationException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+// курсоры для постраничной выдачи по ID (keyset pagination)
+final class PageCursors {
+
+    static final int MAX_PAGE_SIZE = 1000;
+
+    private PageCursors() {
+    }
+
+    // проверить размер страницы
+    static void checkLimit(int limit) {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException(
+                    String.format("Параметр limit должен быть от 1 до %d", MAX_PAGE_SIZE));
+        }
+    }
+
+    // получить ID, после которого начинается страница; 0 — первая страница
+    static int decode(String cursor, String prefix) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!value.startsWith(prefix + ":")) {
+                throw new ValidationException("Некорректный курсор");
+            }
+            int id = Integer.parseInt(value.substring(prefix.length() + 1));
+            if (id < 0) {
+                throw new ValidationException("Некорректный курсор");
+            }
+            return id;
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Некорректный курсор");
+        }
+    }
+
+    // собрать страницу из списка, запрошенного с запасом в один элемент
+    static <T> Page<T> toPage(List<T> items, int limit, ToIntFunction<T> idGetter, String prefix) {
+        if (items.size() <= limit) {
+            return new Page<>(items, null);
+        }
+        List<T> pageItems = items.subList(0, limit);
+        return new Page<>(pageItems, encode(idGetter.applyAsInt(pageItems.get(limit - 1)), prefix));
+    }
+
+    private static String encode(int id, String prefix) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((prefix + ":" + id).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,127 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.storage.cache.CachedValue;
+import ru.yandex.practicum.filmorate.storage.cache.EntityVersions;
+import ru.yandex.practicum.filmorate.storage.cache.StaleServing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+// готовые ответы GET /films/popular: для каждого значения count хранится уже сериализованный
+// JSON и, если включено, его gzip-версия; ответ пересобирается, когда меняется версия
+// списка популярных фильмов, но не чаще одного раза за заданный интервал;
+// устаревший ответ отдается, пока идет пересборка, по правилам StaleServing
+@Service
+public class PopularFilmsCache {
+
+    private static final String CACHE_NAME = "popular-films";
+
+    private final FilmService filmService;
+    private final StaleServing staleServing;
+    private final EntityVersions versions;
+    private final ObjectMapper objectMapper;
+    private final boolean gzipEnabled;
+    private final long minRebuildIntervalNanos;
+    private final Cache<Integer, Response> responses;
+
+
+    public PopularFilmsCache(FilmService filmService,
+                             EntityVersions versions,
+                             ObjectMapper objectMapper,
+                             MeterRegistry meterRegistry,
+                             StaleServing staleServing,
+                             @Value("${filmorate.popular.cache.gzip:true}") boolean gzipEnabled,
+                             @Value("${filmorate.popular.cache.min-rebuild-interval-ms:1000}") long minRebuildIntervalMs,
+                             @Value("${filmorate.popular.cache.max-entries:100}") long maxEntries) {
+        this.filmService = filmService;
+        this.staleServing = staleServing;
+        this.versions = versions;
+        this.objectMapper = objectMapper;
+        this.gzipEnabled = gzipEnabled;
+        this.minRebuildIntervalNanos = TimeUnit.MILLISECONDS.toNanos(minRebuildIntervalMs);
+        this.responses = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, responses, CACHE_NAME);
+    }
+
+    // получить готовый ответ
+    public Response get(int count) {
+        return getCached(count).getValue();
+    }
+
+    // получить готовый ответ вместе с признаком устаревания;
+    // одновременные пересборки для одного count выполняются один раз
+    public CachedValue<Response> getCached(int count) {
+        final Response cached = responses.get(count, this::build);
+        if (isFresh(cached)) {
+            return staleServing.isExpired(cached.builtAt)
+                    ? staleServing.serveExpired(CACHE_NAME, count, cached, cached.builtAt,
+                            () -> build(count), response -> responses.put(count, response))
+                    : CachedValue.fresh(cached);
+        }
+        if (!staleServing.isEnabled()) {
+            return CachedValue.fresh(
+                    responses.asMap().compute(count, (key, current) -> isFresh(current) ? current : build(key)));
+        }
+        return staleServing.reload(CACHE_NAME, count, cached, cached.builtAt, versions.getPopularChangedAt(),
+                () -> build(count), response -> responses.put(count, response));
+    }
+
+    // ---------------------------------------------
+    // ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ
+    // ---------------------------------------------
+
+    // ответ можно отдавать, если список не менялся или ответ собран недавно
+    private boolean isFresh(Response response) {
+        return response != null && (response.version == versions.getPopularVersion()
+                || System.nanoTime() - response.builtAt < minRebuildIntervalNanos);
+    }
+
+    // собрать ответ; версия берется до чтения фильмов, поэтому она не новее содержимого
+    private Response build(int count) {
+        final long version = versions.getPopularVersion();
+        final byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(filmService.getTopFilms(count));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new Response(version, System.nanoTime(), json, gzipEnabled ? gzip(json) : null);
+    }
+
+    // сжать ответ
+    private static byte[] gzip(byte[] json) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    // готовый ответ: версия списка, по которой он собран, JSON и его gzip-версия (или null)
+    @Getter
+    @RequiredArgsConstructor
+    public static final class Response {
+        private final long version;
+        private final long builtAt;
+        private final byte[] json;
+        private final byte[] gzip;
+    }
+}
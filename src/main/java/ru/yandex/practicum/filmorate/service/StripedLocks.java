@@ -0,0 +1,57 @@
+package ru.yandex.practicum.filmorate.service;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// блокировки по ключу, разделенные на полосы: запись в базу и обновление индекса в памяти
+// выполняются под одной блокировкой, поэтому индекс применяет изменения одного ключа
+// в том же порядке, в котором они зафиксированы в базе
+final class StripedLocks {
+
+    private final ReentrantLock[] stripes;
+
+    StripedLocks(int stripeCount) {
+        this.stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    // выполнить действие под блокировкой ключа
+    <T> T withLock(int key, Supplier<T> action) {
+        final ReentrantLock lock = stripes[getStripe(key)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // выполнить действие под блокировками всех ключей; полосы берутся по возрастанию номера,
+    // чтобы одновременные пакеты не ждали друг друга по кругу
+    <T> T withLocks(int[] keys, Supplier<T> action) {
+        final int[] locked = Arrays.stream(keys).map(this::getStripe).distinct().sorted().toArray();
+        int acquired = 0;
+        try {
+            for (int stripe : locked) {
+                stripes[stripe].lock();
+                acquired++;
+            }
+            return action.get();
+        } finally {
+            for (int i = acquired - 1; i >= 0; i--) {
+                stripes[locked[i]].unlock();
+            }
+        }
+    }
+
+    // ---------------------------------------------
+    // ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ
+    // ---------------------------------------------
+
+    private int getStripe(int key) {
+        return Math.floorMod(key * 0x9E3779B9, stripes.length);
+    }
+}
@@ -1,25 +1,59 @@
 package ru.yandex.practicum.filmorate.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.EntityNotFoundException;
+import ru.yandex.practicum.filmorate.model.FriendMutation;
+import ru.yandex.practicum.filmorate.model.FriendSuggestion;
+import ru.yandex.practicum.filmorate.model.MutationAction;
+import ru.yandex.practicum.filmorate.model.MutationResult;
+import ru.yandex.practicum.filmorate.model.MutualFriends;
+import ru.yandex.practicum.filmorate.model.Page;
+import ru.yandex.practicum.filmorate.model.SimilarUser;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserPatch;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.storage.cache.EntityVersions;
+import ru.yandex.practicum.filmorate.storage.cache.SingleFlight;
+import ru.yandex.practicum.filmorate.storage.cache.UserCache;
+import ru.yandex.practicum.filmorate.storage.index.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.index.UserSimilarityIndex;
 
 import javax.validation.ValidationException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class UserService {
 
-    private int nextId = 1;
+    private static final String USER_CURSOR = "user";
+    private static final int MAX_GROUP_SIZE = 20;
+    private static final int MAX_SIMILAR_USERS = 50;
+    private static final int LOCK_STRIPES = 64;
     private final UserStorage userStorage;
+    private final FriendGraph friendGraph;
+    private final FriendSuggestionService suggestionService;
+    private final UserSimilarityIndex similarityIndex;
+    private final UserCache userCache;
+    private final EntityVersions versions;
+    private final SingleFlight singleFlight;
+    private final StripedLocks friendLocks = new StripedLocks(LOCK_STRIPES);
 
 
-    // получить пользователя
+    // получить пользователя; профиль и список друзей берутся из кеша
     public User get(int id) {
-        User user = userStorage.get(id);
+        User user = userCache.get(id,
+                userId -> singleFlight.execute("user", userId, () -> userStorage.get(userId, false)),
+                userId -> singleFlight.execute("user-friends", userId, () -> userStorage.getFriendIds(userId)));
         if (user == null) {
             throw new EntityNotFoundException(String.format("Не найден пользователь с id %d", id), User.class);
         }
@@ -31,76 +65,265 @@ public class UserService {
         return userStorage.getAll();
     }
 
+    // получить страницу пользователей
+    public Page<User> getPage(String after, int limit) {
+        PageCursors.checkLimit(limit);
+        int afterId = PageCursors.decode(after, USER_CURSOR);
+        List<User> users = userStorage.getPage(afterId, limit + 1);
+        return PageCursors.toPage(users, limit, User::getId, USER_CURSOR);
+    }
+
     // добавить пользователя
     public User add(User user) {
-        user.setId(nextId++);
         userStorage.add(user);
         return user;
     }
 
-    // обновить данные пользователя
+    // обновить данные пользователя; пользователь без ID добавляется как новый;
+    // наличие пользователя проверяется по числу обновленных строк, без предварительного чтения
     public User update(User user) {
-        checkIdOnUpdate(user);
-        userStorage.update(user);
+        if (user.getId() == 0) {
+            return add(user);
+        }
+        if (!userStorage.update(user)) {
+            throw new EntityNotFoundException(
+                    String.format("Не найден пользователь с id %d", user.getId()),
+                    User.class
+            );
+        }
+        userCache.invalidateProfile(user.getId());
+        versions.onUserChanged(user.getId());
         return user;
     }
 
-    // добавить в список друзей
+    // частично обновить пользователя: в базу уходят только переданные поля;
+    // пустое имя, как и при создании, заменяется логином
+    public User patch(int userId, UserPatch patch) {
+        if (patch.isChanged(UserPatch.Field.NAME) && (patch.getName() == null || patch.getName().isBlank())) {
+            patch.setName(patch.isChanged(UserPatch.Field.LOGIN) ? patch.getLogin() : get(userId).getLogin());
+        }
+        if (!userStorage.patch(userId, patch)) {
+            throw new EntityNotFoundException(String.format("Не найден пользователь с id %d", userId), User.class);
+        }
+        userCache.invalidateProfile(userId);
+        versions.onUserChanged(userId);
+        return get(userId);
+    }
+
+    // добавить в список друзей: запись идет сразу, без чтения пользователей;
+    // если кого-то из них нет, база отклонит запись по внешнему ключу
     public User addFriend(int userId, int friendId) {
         if (userId == friendId) {
             throw new ValidationException("Переданы одинаковые ID");
         }
 
-        User user = get(userId);
-        User friend = get(friendId);
-
-        user.getFriends().add(friend.getId());
-        userStorage.addFriend(user.getId(), friend.getId());
+        try {
+            changeFriend(userId, friendId, MutationAction.ADD, () -> userStorage.addFriend(userId, friendId));
+        } catch (DataIntegrityViolationException e) {
+            checkExists(userId);
+            checkExists(friendId);
+            throw e;
+        }
 
-        return user;
+        return get(userId);
     }
 
-    // удалить из списка друзей
+    // удалить из списка друзей: пользователи проверяются, только если дружбы не было
     public User removeFriend(int userId, int friendId) {
         if (userId == friendId) {
             throw new ValidationException("Переданы одинаковые ID");
         }
 
-        User user = get(userId);
-        User friend = get(friendId);
+        if (!changeFriend(userId, friendId, MutationAction.REMOVE, () -> userStorage.removeFriend(userId, friendId))) {
+            checkExists(userId);
+            checkExists(friendId);
+        }
 
-        user.getFriends().remove(friend.getId());
-        userStorage.removeFriend(user.getId(), friend.getId());
+        return get(userId);
+    }
 
-        return user;
+    // применить пакет добавлений и удалений друзей: ID проверяются одним запросом,
+    // изменения пишутся одной транзакцией; в ответе результат по каждой операции
+    public List<MutationResult> applyFriends(List<FriendMutation> mutations) {
+        BulkMutations.checkSize(mutations);
+
+        Set<Integer> userIds = new HashSet<>();
+        for (FriendMutation mutation : mutations) {
+            userIds.add(mutation.getUserId());
+            userIds.add(mutation.getFriendId());
+        }
+        Set<Integer> existingUsers = userStorage.getExistingIds(userIds);
+
+        MutationResult[] results = new MutationResult[mutations.size()];
+        List<Integer> indexes = new ArrayList<>();
+        List<FriendMutation> valid = new ArrayList<>();
+        for (int i = 0; i < mutations.size(); i++) {
+            FriendMutation mutation = mutations.get(i);
+            if (mutation.getAction() == null) {
+                results[i] = MutationResult.failed(i, "Не указано действие");
+            } else if (mutation.getUserId() == mutation.getFriendId()) {
+                results[i] = MutationResult.failed(i, "Переданы одинаковые ID");
+            } else if (!existingUsers.contains(mutation.getUserId())) {
+                results[i] = MutationResult.failed(i,
+                        String.format("Не найден пользователь с id %d", mutation.getUserId()));
+            } else if (!existingUsers.contains(mutation.getFriendId())) {
+                results[i] = MutationResult.failed(i,
+                        String.format("Не найден пользователь с id %d", mutation.getFriendId()));
+            } else {
+                indexes.add(i);
+                valid.add(mutation);
+            }
+        }
+
+        if (!valid.isEmpty()) {
+            int[] lockedUsers = valid.stream().mapToInt(FriendMutation::getUserId).toArray();
+            boolean[] changed = friendLocks.withLocks(lockedUsers, () -> {
+                boolean[] applied = userStorage.applyFriends(valid);
+                for (int i = 0; i < applied.length; i++) {
+                    if (applied[i]) {
+                        FriendMutation mutation = valid.get(i);
+                        onFriendChanged(mutation.getUserId(), mutation.getFriendId(), mutation.getAction());
+                    }
+                }
+                return applied;
+            });
+            for (int i = 0; i < changed.length; i++) {
+                results[indexes.get(i)] = MutationResult.of(indexes.get(i), changed[i]);
+            }
+        }
+        return Arrays.asList(results);
     }
 
     // получить друзей пользователя
-    public List<User> getFriends(int userId) {
+    public List<User> getFriends(int userId, boolean loadFriends) {
+        User user = get(userId);
+        return userStorage.getFriends(user.getId(), loadFriends);
+    }
+
+    // получить страницу друзей пользователя
+    public Page<User> getFriendsPage(int userId, String after, int limit, boolean loadFriends) {
+        PageCursors.checkLimit(limit);
         User user = get(userId);
-        return userStorage.getFriends(user.getId());
+        int afterId = PageCursors.decode(after, USER_CURSOR);
+        List<User> friends = userStorage.getFriendsPage(user.getId(), afterId, limit + 1, loadFriends);
+        return PageCursors.toPage(friends, limit, User::getId, USER_CURSOR);
     }
 
-    // получить список общих друзей
-    public List<User> getCommonFriends(int idUser, int idOtherUser) {
+    // получить список общих друзей: пересечение считается по графу в памяти,
+    // из базы загружаются только найденные пользователи
+    public List<User> getCommonFriends(int idUser, int idOtherUser, boolean loadFriends) {
         User user = get(idUser);
         User otherUser = get(idOtherUser);
-        return userStorage.getCommonFriends(user.getId(), otherUser.getId());
+        int[] common = friendGraph.getCommonFriends(user.getId(), otherUser.getId());
+        return userStorage.getByIds(Arrays.stream(common).boxed().collect(Collectors.toList()), loadFriends);
+    }
+
+    // получить подсказки «возможно, вы знакомы»
+    public List<FriendSuggestion> getSuggestions(int userId, int count) {
+        if (count <= 0 || count > FriendSuggestionService.MAX_SUGGESTIONS) {
+            throw new ValidationException(String.format("Параметр count должен быть от 1 до %d",
+                    FriendSuggestionService.MAX_SUGGESTIONS));
+        }
+        User user = get(userId);
+        return suggestionService.getSuggestions(user.getId(), count);
+    }
+
+    // получить пользователей с похожими лайками
+    public List<SimilarUser> getSimilarUsers(int userId, int count) {
+        if (count <= 0 || count > MAX_SIMILAR_USERS) {
+            throw new ValidationException(
+                    String.format("Параметр count должен быть от 1 до %d", MAX_SIMILAR_USERS));
+        }
+        User user = get(userId);
+        List<UserSimilarityIndex.Match> matches = similarityIndex.getSimilar(user.getId(), count);
+        Map<Integer, Double> similarities = new HashMap<>();
+        matches.forEach(match -> similarities.put(match.getUserId(), match.getSimilarity()));
+
+        List<Integer> ids = matches.stream().map(UserSimilarityIndex.Match::getUserId).collect(Collectors.toList());
+        List<SimilarUser> similarUsers = new ArrayList<>(ids.size());
+        for (User similarUser : userStorage.getByIds(ids, false)) {
+            similarUsers.add(new SimilarUser(similarUser, similarities.get(similarUser.getId())));
+        }
+        return similarUsers;
+    }
+
+    // получить общих друзей группы пользователей
+    public List<User> getCommonFriends(List<Integer> userIds, boolean loadFriends) {
+        int[] common = friendGraph.getCommonFriends(checkGroup(userIds));
+        return userStorage.getByIds(Arrays.stream(common).boxed().collect(Collectors.toList()), loadFriends);
+    }
+
+    // посчитать общих друзей группы пользователей
+    public MutualFriends countCommonFriends(List<Integer> userIds) {
+        int[] group = checkGroup(userIds);
+        return new MutualFriends(Arrays.stream(group).boxed().collect(Collectors.toList()),
+                friendGraph.countCommonFriends(group));
+    }
+
+    // посчитать общих друзей для каждой пары пользователей группы
+    public List<MutualFriends> countMutualFriends(List<Integer> userIds) {
+        int[] group = checkGroup(userIds);
+        List<MutualFriends> counts = new ArrayList<>(group.length * (group.length - 1) / 2);
+        for (int i = 0; i < group.length; i++) {
+            for (int j = i + 1; j < group.length; j++) {
+                counts.add(new MutualFriends(List.of(group[i], group[j]),
+                        friendGraph.countCommonFriends(new int[]{group[i], group[j]})));
+            }
+        }
+        return counts;
     }
 
     // ---------------------------------------------
     // ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ
     // ---------------------------------------------
 
-    private void checkIdOnUpdate(User user) throws EntityNotFoundException {
-        if (user.getId() == 0) {
-            add(user);
+    // проверить группу пользователей: от 2 до 20 разных ID, все есть в базе
+    private int[] checkGroup(List<Integer> userIds) {
+        int[] group = userIds == null
+                ? new int[0]
+                : userIds.stream().mapToInt(Integer::intValue).distinct().toArray();
+        if (group.length < 2 || group.length > MAX_GROUP_SIZE) {
+            throw new ValidationException(
+                    String.format("Передайте от 2 до %d разных ID пользователей", MAX_GROUP_SIZE));
         }
-        if (userStorage.get(user.getId()) == null) {
-            throw new EntityNotFoundException(
-                    String.format("Не найден пользователь с id %d", user.getId()),
-                    User.class
-            );
+        Set<Integer> existing = userStorage.getExistingIds(userIds);
+        for (int id : group) {
+            if (!existing.contains(id)) {
+                throw new EntityNotFoundException(String.format("Не найден пользователь с id %d", id), User.class);
+            }
+        }
+        return group;
+    }
+
+    // изменить дружбу в базе и, если она действительно изменилась, обновить граф;
+    // под блокировкой пользователя, иначе одновременные добавление и удаление одной дружбы
+    // могли бы примениться к графу в порядке, обратном порядку записи в базу
+    private boolean changeFriend(int userId, int friendId, MutationAction action, BooleanSupplier statement) {
+        return friendLocks.withLock(userId, () -> {
+            boolean changed = statement.getAsBoolean();
+            if (changed) {
+                onFriendChanged(userId, friendId, action);
+            }
+            return changed;
+        });
+    }
+
+    // обновить граф, кеш и версии после того, как дружба действительно изменилась в базе
+    private void onFriendChanged(int userId, int friendId, MutationAction action) {
+        if (action == MutationAction.ADD) {
+            friendGraph.addFriend(userId, friendId);
+        } else {
+            friendGraph.removeFriend(userId, friendId);
+        }
+        userCache.invalidateFriends(userId);
+        versions.onUserChanged(userId);
+        suggestionService.invalidate(userId);
+    }
+
+    // проверить, что пользователь есть в базе
+    private void checkExists(int userId) {
+        if (!userStorage.exists(userId)) {
+            throw new EntityNotFoundException(String.format("Не найден пользователь с id %d", userId), User.class);
         }
     }
 }
@@ -3,14 +3,19 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmPatch;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserPatch;
 import ru.yandex.practicum.filmorate.storage.GenreStorage;
 import ru.yandex.practicum.filmorate.storage.MpaStorage;
 
 import javax.validation.ValidationException;
 import java.time.LocalDate;
 import java.time.Month;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -36,10 +41,65 @@ public class ValidationService {
             throw new ValidationException("Неверно указан ID рейтинга MPAA");
         }
         validateFilmGenre(film);
-        if (film.getReleaseDate() == null) return;
-        if (CINEMA_CREATED.isAfter(film.getReleaseDate())) {
-            throw new ValidationException("Дата релиза не может быть раньше 28 декабря 1895 года");
+        validateReleaseDate(film.getReleaseDate());
+    }
+
+    // валидация частичного обновления пользователя: проверяются только переданные поля
+    public void validate(UserPatch patch) throws ValidationException {
+        if (patch.isChanged(UserPatch.Field.EMAIL) && (patch.getEmail() == null || patch.getEmail().isBlank())) {
+            throw new ValidationException("Необходимо указать адрес электронной почты");
+        }
+        if (patch.isChanged(UserPatch.Field.LOGIN)) {
+            if (patch.getLogin() == null || patch.getLogin().isBlank()) {
+                throw new ValidationException("Необходимо указать логин");
+            }
+            if (patch.getLogin().contains(" ")) {
+                throw new ValidationException("В логине нельзя использовать пробелы");
+            }
+        }
+    }
+
+    // валидация частичного обновления фильма: проверяются только переданные поля
+    public void validate(FilmPatch patch) {
+        if (patch.isChanged(FilmPatch.Field.NAME) && (patch.getName() == null || patch.getName().isBlank())) {
+            throw new ValidationException("Укажите название фильма");
+        }
+        if (patch.getMpa() != null && mpaStorage.get(patch.getMpa().getId()) == null) {
+            throw new ValidationException("Неверно указан ID рейтинга MPAA");
         }
+        if (patch.getGenres() != null) {
+            for (Genre genre : patch.getGenres()) {
+                if (genreStorage.get(genre.getId()) == null) {
+                    throw new ValidationException("Нет жанра с id=" + genre.getId());
+                }
+            }
+        }
+        validateReleaseDate(patch.getReleaseDate());
+    }
+
+    // валидация фильма по заранее загруженным ID рейтингов и жанров, без запросов к базе
+    public void validate(Film film, Set<Integer> mpaIds, Set<Integer> genreIds) {
+        if (film.getMpa() != null && !mpaIds.contains(film.getMpa().getId())) {
+            throw new ValidationException("Неверно указан ID рейтинга MPAA");
+        }
+        if (film.getGenres() != null) {
+            for (Genre genre : film.getGenres()) {
+                if (!genreIds.contains(genre.getId())) {
+                    throw new ValidationException("Нет жанра с id=" + genre.getId());
+                }
+            }
+        }
+        validateReleaseDate(film.getReleaseDate());
+    }
+
+    // получить ID всех рейтингов MPAA
+    public Set<Integer> getMpaIds() {
+        return mpaStorage.getAll().stream().map(Mpa::getId).collect(Collectors.toSet());
+    }
+
+    // получить ID всех жанров
+    public Set<Integer> getGenreIds() {
+        return genreStorage.getAll().stream().map(Genre::getId).collect(Collectors.toSet());
     }
 
     // валидация жанра
@@ -53,4 +113,12 @@ public class ValidationService {
             }
         }
     }
+
+    // валидация даты релиза
+    private void validateReleaseDate(LocalDate releaseDate) {
+        if (releaseDate == null) return;
+        if (CINEMA_CREATED.isAfter(releaseDate)) {
+            throw new ValidationException("Дата релиза не может быть раньше 28 декабря 1895 года");
+        }
+    }
 }
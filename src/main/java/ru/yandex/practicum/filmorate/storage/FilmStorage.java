@@ -1,22 +1,45 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmPatch;
+import ru.yandex.practicum.filmorate.model.LikeMutation;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
 
     List<Film> getAll();
 
+    List<Film> getPage(int afterId, int limit);
+
+    List<Film> getByIds(List<Integer> ids);
+
+    void streamAll(Consumer<Film> action);
+
     Film get(int id);
 
+    Film get(int id, boolean loadLikes);
+
     void add(Film film);
 
-    void update(Film film);
+    void addAll(List<Film> films);
+
+    boolean update(Film film);
+
+    boolean patch(int filmId, FilmPatch patch);
+
+    boolean addLike(int filmId, int userId);
+
+    boolean removeLike(int filmId, int userId);
+
+    boolean[] applyLikes(List<LikeMutation> mutations);
 
-    void addLike(int filmId, int userId);
+    boolean exists(int id);
 
-    void removeLike(int filmId, int userId);
+    Set<Integer> getExistingIds(Collection<Integer> ids);
 
     List<Film> getTopFilms(Integer size);
 
@@ -10,4 +10,6 @@ public interface GenreStorage {
 
     Genre get(int id);
 
+    String getVersion();
+
 }
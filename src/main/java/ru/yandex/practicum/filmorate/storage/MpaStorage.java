@@ -10,4 +10,6 @@ public interface MpaStorage {
 
     Mpa get(int id);
 
+    String getVersion();
+
 }
@@ -1,25 +1,54 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import ru.yandex.practicum.filmorate.model.FriendMutation;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserPatch;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface UserStorage {
 
     User get(int id);
 
+    User get(int id, boolean loadFriends);
+
+    List<User> getByIds(List<Integer> ids, boolean loadFriends);
+
     List<User> getAll();
 
+    List<User> getPage(int afterId, int limit);
+
+    void streamAll(Consumer<User> action);
+
     void add(User user);
 
-    void update(User user);
+    boolean update(User user);
+
+    boolean patch(int userId, UserPatch patch);
+
+    Set<Integer> getFriendIds(int userId);
 
     List<User> getFriends(int userId);
 
+    List<User> getFriends(int userId, boolean loadFriends);
+
+    List<User> getFriendsPage(int userId, int afterId, int limit, boolean loadFriends);
+
     List<User> getCommonFriends(int idUser, int idOtherUser);
 
-    void addFriend(int userId, int friendId);
+    List<User> getCommonFriends(int idUser, int idOtherUser, boolean loadFriends);
+
+    boolean addFriend(int userId, int friendId);
+
+    boolean removeFriend(int userId, int friendId);
+
+    boolean[] applyFriends(List<FriendMutation> mutations);
+
+    boolean exists(int id);
 
-    void removeFriend(int userId, int friendId);
+    Set<Integer> getExistingIds(Collection<Integer> ids);
 
 }
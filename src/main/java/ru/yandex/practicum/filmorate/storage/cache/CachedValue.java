@@ -0,0 +1,20 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+// значение из кеша; stale — значение заведомо устарело и отдано вместо ответа базы,
+// которая не уложилась в отведенное время; ageMs — сколько времени назад значение загружено
+@Getter
+@RequiredArgsConstructor
+public class CachedValue<V> {
+
+    private final V value;
+    private final boolean stale;
+    private final long ageMs;
+
+    // получить актуальное значение
+    public static <V> CachedValue<V> fresh(V value) {
+        return new CachedValue<>(value, false, 0);
+    }
+}
@@ -0,0 +1,65 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// версии фильмов, пользователей и списка популярных фильмов для условных GET-запросов;
+// версии берутся из одного счетчика, который начинается с текущего времени в микросекундах,
+// поэтому они только растут, в том числе после перезапуска приложения;
+// сущность, которая не менялась с запуска, имеет начальную версию.
+// Версии хранятся в памяти узла и видят только изменения, прошедшие через этот узел:
+// если приложение запущено на нескольких узлах, условные GET-запросы нужно выключить
+// (filmorate.conditional-get.enabled=false), иначе узел ответит 304 на данные,
+// измененные через другой узел
+@Component
+public class EntityVersions {
+
+    private final AtomicLong clock = new AtomicLong(System.currentTimeMillis() * 1000);
+    private final long initialVersion = clock.get();
+
+    private final Map<Integer, Long> films = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> users = new ConcurrentHashMap<>();
+    private volatile long popular = initialVersion;
+    private volatile long popularChangedAt = System.nanoTime();
+
+    // получить версию фильма
+    public long getFilmVersion(int filmId) {
+        return films.getOrDefault(filmId, initialVersion);
+    }
+
+    // получить версию пользователя
+    public long getUserVersion(int userId) {
+        return users.getOrDefault(userId, initialVersion);
+    }
+
+    // получить версию списка популярных фильмов
+    public long getPopularVersion() {
+        return popular;
+    }
+
+    // получить момент System.nanoTime() последнего изменения списка популярных фильмов;
+    // он отмечается после смены версии, поэтому чтение, начатое раньше, могло видеть прежний список
+    public long getPopularChangedAt() {
+        return popularChangedAt;
+    }
+
+    // отметить изменение фильма; список популярных фильмов тоже меняется
+    public void onFilmChanged(int filmId) {
+        films.put(filmId, clock.incrementAndGet());
+        onPopularChanged();
+    }
+
+    // отметить изменение списка популярных фильмов, например после добавления фильмов
+    public void onPopularChanged() {
+        popular = clock.incrementAndGet();
+        popularChangedAt = System.nanoTime();
+    }
+
+    // отметить изменение пользователя или его списка друзей
+    public void onUserChanged(int userId) {
+        users.put(userId, clock.incrementAndGet());
+    }
+}
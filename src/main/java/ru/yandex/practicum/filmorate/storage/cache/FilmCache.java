@@ -0,0 +1,164 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.MutationAction;
+
+import java.util.HashSet;
+import java.util.function.IntFunction;
+
+// кеш полностью загруженных фильмов (с жанрами и лайками) с вытеснением W-TinyLFU;
+// размер ограничен суммарным весом записей, потому что популярный фильм с большим
+// списком лайков занимает намного больше памяти, чем фильм без лайков;
+// фильм в кеше не изменяется — при лайке запись заменяется исправленной копией;
+// измененный фильм не удаляется, а помечается устаревшим: если база не успеет загрузить
+// новую версию в бюджет задержки, клиент получит последнюю удачную (см. StaleServing)
+@Component
+public class FilmCache {
+
+    private static final String CACHE_NAME = "films";
+
+    private final Cache<Integer, Entry> cache;
+    private final StaleServing staleServing;
+
+
+    public FilmCache(MeterRegistry meterRegistry,
+                     StaleServing staleServing,
+                     @Value("${filmorate.cache.films.max-weight:100000}") long maxWeight) {
+        this.staleServing = staleServing;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((Integer id, Entry entry) -> weigh(entry.film))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    // получить фильм из кеша; если его там нет — загрузить и сохранить, если он найден
+    public Film get(int filmId, IntFunction<Film> loader) {
+        return getCached(filmId, loader).getValue();
+    }
+
+    // получить фильм из кеша вместе с признаком устаревания
+    public CachedValue<Film> getCached(int filmId, IntFunction<Film> loader) {
+        final Entry entry = cache.get(filmId, id -> {
+            final Film film = loader.apply(id);
+            return film == null ? null : new Entry(film, System.nanoTime(), false);
+        });
+        if (entry == null) {
+            return CachedValue.fresh(null);
+        }
+        if (entry.invalidated) {
+            final long start = System.nanoTime();
+            return staleServing.reload(CACHE_NAME, filmId, entry.film, entry.loadedAt, entry.invalidatedAt,
+                    () -> loader.apply(filmId), film -> onLoaded(filmId, film, start));
+        }
+        if (staleServing.isExpired(entry.loadedAt)) {
+            final long start = System.nanoTime();
+            return staleServing.serveExpired(CACHE_NAME, filmId, entry.film, entry.loadedAt,
+                    () -> loader.apply(filmId), film -> onLoaded(filmId, film, start));
+        }
+        return CachedValue.fresh(entry.film);
+    }
+
+    // пометить фильм устаревшим, чтобы при следующем запросе он загрузился заново
+    public void invalidate(int filmId) {
+        final long now = System.nanoTime();
+        cache.asMap().computeIfPresent(filmId, (id, entry) -> new Entry(entry.film, entry.loadedAt, true, now));
+    }
+
+    // исправить список лайков фильма в кеше; если фильма в кеше нет — ничего не делать;
+    // повторное применение того же лайка не меняет запись
+    public void onLikeChanged(int filmId, int userId, MutationAction action) {
+        cache.asMap().computeIfPresent(filmId, (id, entry) -> {
+            final Film film = entry.film;
+            final boolean contains = film.getLikes().contains(userId);
+            if (contains == (action == MutationAction.ADD)) {
+                return entry;
+            }
+            final Film patched = copy(film);
+            if (action == MutationAction.ADD) {
+                patched.getLikes().add(userId);
+                patched.setTotalLikes(film.getTotalLikes() + 1);
+            } else {
+                patched.getLikes().remove(userId);
+                patched.setTotalLikes(film.getTotalLikes() - 1);
+            }
+            return new Entry(patched, entry.loadedAt, entry.invalidated, entry.invalidatedAt);
+        });
+    }
+
+    // получить статистику попаданий, промахов и вытеснений
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    // выполнить отложенное обслуживание кеша (вытеснение) сразу
+    void cleanUp() {
+        cache.cleanUp();
+    }
+
+    // ---------------------------------------------
+    // ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ
+    // ---------------------------------------------
+
+    // сохранить загруженный фильм; если в кеше уже фильм из более поздней загрузки, оставить его;
+    // если фильм изменился уже после начала загрузки, запись остается устаревшей
+    // и при следующем запросе загрузится снова
+    private void onLoaded(int filmId, Film film, long loadStart) {
+        if (film == null) {
+            cache.invalidate(filmId);
+            return;
+        }
+        cache.asMap().compute(filmId, (id, current) -> {
+            if (current != null && current.loadedAt - loadStart > 0) {
+                return current;
+            }
+            return current != null && current.invalidated && current.invalidatedAt - loadStart > 0
+                    ? new Entry(film, loadStart, true, current.invalidatedAt)
+                    : new Entry(film, loadStart, false);
+        });
+    }
+
+    // вес записи: сам фильм, его жанры и лайки
+    private static int weigh(Film film) {
+        return 1 + film.getGenres().size() + film.getLikes().size();
+    }
+
+    // скопировать фильм со своими множествами жанров и лайков
+    private static Film copy(Film film) {
+        final Film copy = new Film(film.getId(), film.getName(), film.getTotalLikes());
+        copy.setDescription(film.getDescription());
+        copy.setReleaseDate(film.getReleaseDate());
+        copy.setMpa(film.getMpa());
+        copy.setDuration(film.getDuration());
+        copy.setGenres(new HashSet<>(film.getGenres()));
+        copy.setLikes(new HashSet<>(film.getLikes()));
+        return copy;
+    }
+
+    // запись кеша: фильм, момент загрузки и признак того, что фильм с тех пор изменился
+    private static final class Entry {
+        private final Film film;
+        private final long loadedAt;
+        private final boolean invalidated;
+        private final long invalidatedAt;
+
+        private Entry(Film film, long loadedAt, boolean invalidated) {
+            this(film, loadedAt, invalidated, 0);
+        }
+
+        private Entry(Film film, long loadedAt, boolean invalidated, long invalidatedAt) {
+            this.film = film;
+            this.loadedAt = loadedAt;
+            this.invalidated = invalidated;
+            this.invalidatedAt = invalidatedAt;
+        }
+    }
+}
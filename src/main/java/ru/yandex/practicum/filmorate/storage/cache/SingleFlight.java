@@ -0,0 +1,69 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+// объединение одинаковых одновременных запросов к хранилищу: первый запрос по ключу
+// выполняет загрузку, а остальные, пришедшие до ее окончания, ждут и получают тот же результат
+// (или ту же ошибку); результат общий, поэтому вызывающие не должны его изменять
+@Component
+@RequiredArgsConstructor
+public class SingleFlight {
+
+    private final MeterRegistry meterRegistry;
+    private final Map<List<Object>, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    // выполнить загрузку или присоединиться к уже идущей загрузке с тем же ключом
+    @SuppressWarnings("unchecked")
+    public <V> V execute(String name, Object key, Supplier<V> call) {
+        final List<Object> flightKey = List.of(name, key);
+        final CompletableFuture<Object> created = new CompletableFuture<>();
+        final CompletableFuture<Object> running = inFlight.putIfAbsent(flightKey, created);
+        if (running != null) {
+            getCounter(name, "collapsed").increment();
+            try {
+                return (V) running.join();
+            } catch (CompletionException e) {
+                throw propagate(e.getCause());
+            }
+        }
+
+        getCounter(name, "executed").increment();
+        try {
+            final V value = call.get();
+            created.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(flightKey, created);
+        }
+    }
+
+    // ---------------------------------------------
+    // ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ
+    // ---------------------------------------------
+
+    // получить счетчик вызовов: executed — загрузка выполнена, collapsed — результат взят у другого запроса
+    private Counter getCounter(String name, String result) {
+        return meterRegistry.counter("filmorate.singleflight.calls", "name", name, "result", result);
+    }
+
+    // пробросить ошибку загрузки ожидающему запросу
+    private static RuntimeException propagate(Throwable cause) {
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return cause instanceof RuntimeException ? (RuntimeException) cause : new CompletionException(cause);
+    }
+}
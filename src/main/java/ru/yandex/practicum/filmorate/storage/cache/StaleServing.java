@@ -0,0 +1,165 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// режим stale-while-revalidate для кешей чтения:
+// значение старше мягкого TTL отдается сразу, а обновляется одной фоновой загрузкой;
+// если загрузка заведомо устаревшего значения не укладывается в бюджет задержки,
+// отдается последнее удачное значение с пометкой об устаревании
+@Component
+@Slf4j
+public class StaleServing {
+
+    private static final String SOFT_TTL = "soft-ttl";
+    private static final String LATENCY_BUDGET = "latency-budget";
+
+    private final boolean enabled;
+    private final long softTtlNanos;
+    private final long latencyBudgetMs;
+    private final MeterRegistry meterRegistry;
+    private final ThreadPoolExecutor executor;
+    private final Map<List<Object>, Refresh<?>> refreshes = new ConcurrentHashMap<>();
+
+
+    public StaleServing(MeterRegistry meterRegistry,
+                        @Value("${filmorate.cache.stale.enabled:true}") boolean enabled,
+                        @Value("${filmorate.cache.stale.soft-ttl-ms:30000}") long softTtlMs,
+                        @Value("${filmorate.cache.stale.latency-budget-ms:250}") long latencyBudgetMs,
+                        @Value("${filmorate.cache.stale.refresh-threads:2}") int refreshThreads,
+                        @Value("${filmorate.cache.stale.refresh-queue-capacity:1000}") int refreshQueueCapacity) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.softTtlNanos = TimeUnit.MILLISECONDS.toNanos(softTtlMs);
+        this.latencyBudgetMs = latencyBudgetMs;
+        final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("cache-refresh-");
+        threadFactory.setDaemon(true);
+        this.executor = new ThreadPoolExecutor(refreshThreads, refreshThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(refreshQueueCapacity), threadFactory);
+    }
+
+    // включен ли режим
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // истек ли мягкий TTL значения, загруженного в указанный момент System.nanoTime()
+    public boolean isExpired(long loadedAt) {
+        return enabled && System.nanoTime() - loadedAt >= softTtlNanos;
+    }
+
+    // значение старше мягкого TTL: запустить фоновое обновление и отдать прежнее значение
+    public <V> CachedValue<V> serveExpired(String cacheName, Object key, V value, long loadedAt,
+                                           Supplier<V> loader, Consumer<V> onLoaded) {
+        refresh(cacheName, key, loadedAt, loader, onLoaded);
+        meterRegistry.counter("filmorate.cache.stale.served", "cache", cacheName, "reason", SOFT_TTL).increment();
+        return new CachedValue<>(value, false, getAgeMs(loadedAt));
+    }
+
+    // значение заведомо устарело с момента invalidatedAt (System.nanoTime()): загрузить новое
+    // и дождаться его в пределах бюджета задержки; загрузка, начатая раньше этого момента,
+    // могла прочитать прежние данные, поэтому к ней запрос не присоединяется;
+    // если база не успела — отдать прежнее значение, а загрузка завершится в фоне
+    public <V> CachedValue<V> reload(String cacheName, Object key, V lastValue, long loadedAt, long invalidatedAt,
+                                     Supplier<V> loader, Consumer<V> onLoaded) {
+        final CompletableFuture<V> refresh = enabled && lastValue != null
+                ? refresh(cacheName, key, invalidatedAt, loader, onLoaded)
+                : null;
+        if (refresh == null) {
+            final V value = loader.get();
+            onLoaded.accept(value);
+            return CachedValue.fresh(value);
+        }
+        try {
+            return CachedValue.fresh(refresh.get(latencyBudgetMs, TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            log.warn("Cache {} served stale value for {}: load exceeded {} ms", cacheName, key, latencyBudgetMs);
+        } catch (ExecutionException e) {
+            log.warn("Cache {} served stale value for {}: load failed", cacheName, key, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        meterRegistry.counter("filmorate.cache.stale.served", "cache", cacheName, "reason", LATENCY_BUDGET)
+                .increment();
+        return new CachedValue<>(lastValue, true, getAgeMs(loadedAt));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // ---------------------------------------------
+    // ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ
+    // ---------------------------------------------
+
+    // запустить фоновую загрузку или присоединиться к загрузке того же ключа,
+    // начатой не раньше notBefore; более старая загрузка продолжается, но ее место занимает новая;
+    // если очередь фоновых загрузок переполнена или остановлена — вернуть null
+    @SuppressWarnings("unchecked")
+    private <V> CompletableFuture<V> refresh(String cacheName, Object key, long notBefore,
+                                             Supplier<V> loader, Consumer<V> onLoaded) {
+        final List<Object> refreshKey = List.of(cacheName, key);
+        final Refresh<V> refresh = new Refresh<>(System.nanoTime());
+        final Refresh<?> joined = refreshes.compute(refreshKey, (k, running) ->
+                running != null && running.startedAt - notBefore >= 0 ? running : refresh);
+        if (joined != refresh) {
+            return (CompletableFuture<V>) joined.future;
+        }
+        final CompletableFuture<V> created = refresh.future;
+        try {
+            executor.execute(() -> {
+                final long start = System.nanoTime();
+                try {
+                    final V value = loader.get();
+                    onLoaded.accept(value);
+                    created.complete(value);
+                } catch (RuntimeException e) {
+                    created.completeExceptionally(e);
+                } finally {
+                    refreshes.remove(refreshKey, refresh);
+                    meterRegistry.timer("filmorate.cache.refresh", "cache", cacheName)
+                            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshes.remove(refreshKey, refresh);
+            created.completeExceptionally(e);
+            log.warn("Cache {} refresh for {} rejected", cacheName, key);
+            return null;
+        }
+        return created;
+    }
+
+    // получить возраст значения в миллисекундах
+    private static long getAgeMs(long loadedAt) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - loadedAt);
+    }
+
+    // фоновая загрузка и момент ее запуска
+    private static final class Refresh<V> {
+        private final CompletableFuture<V> future = new CompletableFuture<>();
+        private final long startedAt;
+
+        private Refresh(long startedAt) {
+            this.startedAt = startedAt;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+// кеш пользователей: профиль и множество ID друзей хранятся отдельными записями,
+// поэтому изменение дружбы сбрасывает только список друзей, а профиль остается в кеше;
+// вызывающий всегда получает новый объект User со своей копией списка друзей
+@Component
+public class UserCache {
+
+    private final boolean enabled;
+    private final Cache<Integer, User> profiles;
+    private final Cache<Integer, Set<Integer>> friendIds;
+
+
+    public UserCache(MeterRegistry meterRegistry,
+                     @Value("${filmorate.cache.users.enabled:true}") boolean enabled,
+                     @Value("${filmorate.cache.users.max-profiles:10000}") long maxProfiles,
+                     @Value("${filmorate.cache.users.max-friends-weight:100000}") long maxFriendsWeight) {
+        this.enabled = enabled;
+        this.profiles = Caffeine.newBuilder()
+                .maximumSize(maxProfiles)
+                .recordStats()
+                .build();
+        this.friendIds = Caffeine.newBuilder()
+                .maximumWeight(maxFriendsWeight)
+                .weigher((Integer id, Set<Integer> friends) -> 1 + friends.size())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, profiles, "users");
+        CaffeineCacheMetrics.monitor(meterRegistry, friendIds, "user-friends");
+    }
+
+    // включен ли кеш
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // получить пользователя со списком друзей; профиль и друзья загружаются, если их нет в кеше;
+    // если кеш выключен — загрузить их сразу
+    public User get(int userId, IntFunction<User> profileLoader, IntFunction<Set<Integer>> friendsLoader) {
+        final User profile = enabled
+                ? profiles.get(userId, id -> profileLoader.apply(id))
+                : profileLoader.apply(userId);
+        if (profile == null) {
+            return null;
+        }
+        final Set<Integer> friends = enabled
+                ? friendIds.get(userId, id -> Set.copyOf(friendsLoader.apply(id)))
+                : friendsLoader.apply(userId);
+        return copy(profile, friends);
+    }
+
+    // удалить профиль пользователя из кеша
+    public void invalidateProfile(int userId) {
+        profiles.invalidate(userId);
+    }
+
+    // удалить список друзей пользователя из кеша
+    public void invalidateFriends(int userId) {
+        friendIds.invalidate(userId);
+    }
+
+    // получить статистику кеша профилей
+    public CacheStats getProfileStats() {
+        return profiles.stats();
+    }
+
+    // получить статистику кеша списков друзей
+    public CacheStats getFriendsStats() {
+        return friendIds.stats();
+    }
+
+    // ---------------------------------------------
+    // ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ
+    // ---------------------------------------------
+
+    // собрать пользователя из профиля и списка друзей
+    private static User copy(User profile, Set<Integer> friends) {
+        final User user = new User(profile.getId(), profile.getEmail(), profile.getLogin(), profile.getName());
+        user.setBirthday(profile.getBirthday());
+        user.setFriends(new HashSet<>(friends));
+        return user;
+    }
+}
@@ -1,156 +1,335 @@
 package ru.yandex.practicum.filmorate.storage.impl;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.GeneratedKeyHolder;
-import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmPatch;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeMutation;
 import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.MutationAction;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.MpaStorage;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 
 @Repository("filmsDb")
 @RequiredArgsConstructor
 public class FilmDbStorage implements FilmStorage {
 
+    private static final String FILM_SELECT = "select f.FILM_ID, f.NAME, f.DESCRIPTION, f.RELEASE_DATE, " +
+            "f.MPA, f.DURATION, f.LIKES " +
+            "from FILMS f ";
+
+    // сколько фильмов читается из курсора и догружается за один раз при выгрузке
+    private static final int STREAM_CHUNK_SIZE = 500;
+
     private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final FilmLikeCounters likeCounters;
+    private final GenreStorage genreStorage;
+    private final MpaStorage mpaStorage;
+    private final IdGenerator idGenerator;
 
     // получить фильм
     @Override
     public Film get(int id) {
-        final String sqlQuery = "select FILM_ID, NAME, DESCRIPTION, RELEASE_DATE, MPA, DURATION, LIKES " +
-                "from FILMS where FILM_ID = ?";
-        final List<Film> films = jdbcTemplate.query(sqlQuery, FilmDbStorage::makeFilm, id);
+        return get(id, true);
+    }
+
+    // получить фильм — со списком лайков или без него
+    @Override
+    public Film get(int id, boolean loadLikes) {
+        final String sqlQuery = FILM_SELECT + "where f.FILM_ID = ?";
+        final List<Film> films = jdbcTemplate.query(sqlQuery, this::makeFilm, id);
         if (films.isEmpty()) {
             return null;
         }
 
-        Film film = films.get(0);
-        loadFilmMpa(film);
-        loadFilmGenres(film);
-        loadFilmLikes(film);
-
-        return film;
+        loadFilmsData(films, loadLikes);
+        return films.get(0);
     }
 
     // получить все фильмы
     @Override
     public List<Film> getAll() {
-        String sql = "select FILM_ID, NAME, DESCRIPTION, RELEASE_DATE, MPA, DURATION, LIKES from FILMS";
-        final List<Film> films = jdbcTemplate.query(sql, FilmDbStorage::makeFilm);
+        final String sql = FILM_SELECT + "order by f.FILM_ID";
+        final List<Film> films = jdbcTemplate.query(sql, this::makeFilm);
 
-        films.forEach(this::loadFilmMpa);
-        films.forEach(this::loadFilmGenres);
-        films.forEach(this::loadFilmLikes);
+        loadFilmsData(films);
         return films;
     }
 
-    // добавить фильм
+    // получить страницу фильмов с ID больше заданного
     @Override
-    public void add(Film film) {
-        final String sqlQuery = "insert into FILMS (NAME, DESCRIPTION, RELEASE_DATE, MPA, DURATION, LIKES) " +
-                "values (?, ?, ?, ?, ?, ?)";
-
-        KeyHolder keyHolder = new GeneratedKeyHolder();
-        jdbcTemplate.update(connection -> {
-            PreparedStatement stmt = connection.prepareStatement(sqlQuery, new String[]{"FILM_ID"});
-            stmt.setString(1, film.getName());
-            if (film.getDescription() == null) {
-                stmt.setNull(2, Types.NULL);
-            } else {
-                stmt.setString(2, film.getDescription());
-            }
-            if (film.getReleaseDate() == null) {
-                stmt.setNull(3, Types.NULL);
-            } else {
-                stmt.setDate(3, Date.valueOf(film.getReleaseDate()));
-            }
-            if (film.getMpa() == null) {
-                stmt.setNull(4, Types.NULL);
-            } else {
-                stmt.setInt(4, film.getMpa().getId());
+    public List<Film> getPage(int afterId, int limit) {
+        final String sql = FILM_SELECT + "where f.FILM_ID > ? order by f.FILM_ID limit ?";
+        final List<Film> films = jdbcTemplate.query(sql, this::makeFilm, afterId, limit);
+
+        loadFilmsData(films);
+        return films;
+    }
+
+    // получить фильмы по списку ID в том же порядке
+    @Override
+    public List<Film> getByIds(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        final String sql = FILM_SELECT + "where f.FILM_ID = any(?)";
+        final List<Film> films = jdbcTemplate.query(sql, this::makeFilm,
+                (Object) ids.toArray(new Integer[0]));
+        loadFilmsData(films);
+
+        final Map<Integer, Film> filmsById = new HashMap<>();
+        films.forEach(film -> filmsById.put(film.getId(), film));
+
+        final List<Film> orderedFilms = new ArrayList<>(films.size());
+        for (Integer id : ids) {
+            Film film = filmsById.get(id);
+            if (film != null) {
+                orderedFilms.add(film);
             }
-            if (film.getDuration() == null) {
-                stmt.setNull(5, Types.NULL);
-            } else {
-                stmt.setInt(5, film.getDuration());
+        }
+        return orderedFilms;
+    }
+
+    // выгрузить все фильмы потоком, не собирая их в один список
+    @Override
+    public void streamAll(Consumer<Film> action) {
+        final String sql = FILM_SELECT + "order by f.FILM_ID";
+
+        jdbcTemplate.query(connection -> {
+            PreparedStatement stmt = connection.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(STREAM_CHUNK_SIZE);
+            return stmt;
+        }, (ResultSetExtractor<Void>) rs -> {
+            final List<Film> chunk = new ArrayList<>(STREAM_CHUNK_SIZE);
+            int rowNum = 0;
+            while (rs.next()) {
+                chunk.add(makeFilm(rs, rowNum++));
+                if (chunk.size() == STREAM_CHUNK_SIZE) {
+                    streamChunk(chunk, action);
+                }
             }
+            streamChunk(chunk, action);
+            return null;
+        });
+    }
+
+    // добавить фильм; ID выдается генератором до вставки
+    @Override
+    public void add(Film film) {
+        final String sqlQuery = "insert into FILMS (NAME, DESCRIPTION, RELEASE_DATE, MPA, DURATION, LIKES, FILM_ID) " +
+                "values (?, ?, ?, ?, ?, ?, ?)";
+
+        film.setId(idGenerator.nextFilmId());
+        jdbcTemplate.update(sqlQuery, stmt -> {
+            setFilmFields(stmt, film);
             stmt.setInt(6, film.getTotalLikes());
-            return stmt;
-        }, keyHolder);
-        setFilmGenres(film);
+            stmt.setInt(7, film.getId());
+        });
+        insertFilmGenres(film.getId(), getGenreIds(film.getGenres()));
     }
 
-    // обновить данные о фильме
+    // добавить пачку фильмов одной транзакцией: фильмы и их жанры уходят в базу пакетами,
+    // ID фильмов выдаются генератором до вставки
     @Override
-    public void update(Film film) {
+    public void addAll(List<Film> films) {
+        if (films.isEmpty()) {
+            return;
+        }
+        final String sqlQuery = "insert into FILMS (NAME, DESCRIPTION, RELEASE_DATE, MPA, DURATION, LIKES, FILM_ID) " +
+                "values (?, ?, ?, ?, ?, 0, ?)";
+        final String sqlQueryGenres = "insert into FILM_GENRE (FILM_ID, GENRE_ID) values (?, ?)";
+
+        for (Film film : films) {
+            film.setId(idGenerator.nextFilmId());
+            film.setTotalLikes(0);
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(sqlQuery, films, films.size(), (stmt, film) -> {
+                setFilmFields(stmt, film);
+                stmt.setInt(6, film.getId());
+            });
+
+            final List<Object[]> genreArgs = new ArrayList<>();
+            for (Film film : films) {
+                if (film.getGenres() != null) {
+                    for (Genre genre : film.getGenres()) {
+                        genreArgs.add(new Object[]{film.getId(), genre.getId()});
+                    }
+                }
+            }
+            jdbcTemplate.batchUpdate(sqlQueryGenres, genreArgs);
+        });
+    }
+
+    // обновить данные о фильме без предварительного чтения; false — фильма с таким ID нет;
+    // счетчик LIKES не перезаписывается — его меняют только addLike и removeLike
+    @Override
+    public boolean update(Film film) {
         final String sqlQuery = "update FILMS " +
-                "set NAME = ?, DESCRIPTION = ?, RELEASE_DATE = ?, MPA = ?, DURATION = ?, LIKES = ? " +
+                "set NAME = ?, DESCRIPTION = ?, RELEASE_DATE = ?, MPA = ?, DURATION = ? " +
                 "where FILM_ID = ?";
 
-        KeyHolder keyHolder = new GeneratedKeyHolder();
-        jdbcTemplate.update(connection -> {
-            PreparedStatement stmt = connection.prepareStatement(sqlQuery, new String[]{"FILM_ID"});
-            stmt.setString(1, film.getName());
-            if (film.getDescription() == null) {
-                stmt.setNull(2, Types.NULL);
-            } else {
-                stmt.setString(2, film.getDescription());
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            final int updated = jdbcTemplate.update(sqlQuery, stmt -> {
+                setFilmFields(stmt, film);
+                stmt.setInt(6, film.getId());
+            });
+            if (updated == 0) {
+                return false;
             }
-            if (film.getReleaseDate() == null) {
-                stmt.setNull(3, Types.NULL);
-            } else {
-                stmt.setDate(3, Date.valueOf(film.getReleaseDate()));
+
+            setFilmGenres(film.getId(), film.getGenres());
+            return true;
+        }));
+    }
+
+    // частично обновить фильм: в UPDATE попадают только переданные колонки,
+    // жанры записываются разницей с текущими; false, если фильма нет в базе
+    @Override
+    public boolean patch(int filmId, FilmPatch patch) {
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            if (patch.hasColumnChanges()) {
+                if (!updateColumns(filmId, patch)) {
+                    return false;
+                }
+            } else if (!exists(filmId)) {
+                return false;
             }
-            if (film.getMpa() == null) {
-                stmt.setNull(4, Types.NULL);
-            } else {
-                stmt.setInt(4, film.getMpa().getId());
+
+            if (patch.isChanged(FilmPatch.Field.GENRES)) {
+                setFilmGenres(filmId, patch.getGenres());
             }
-            if (film.getDuration() == null) {
-                stmt.setNull(5, Types.NULL);
-            } else {
-                stmt.setInt(5, film.getDuration());
+            return true;
+        }));
+    }
+
+    // добавить лайк фильму и увеличить счетчик, если лайка еще не было
+    @Override
+    public boolean addLike(int filmId, int userId) {
+        final String sqlQueryInsert = "insert into FILM_LIKE (FILM_ID, USER_ID) " +
+                "select ?, ? where not exists " +
+                "(select 1 from FILM_LIKE where FILM_ID = ? and USER_ID = ?)";
+
+        try {
+            return changeLikes(filmId, 1,
+                    () -> jdbcTemplate.update(sqlQueryInsert, filmId, userId, filmId, userId) > 0);
+        } catch (DuplicateKeyException e) {
+            // такой же лайк параллельно добавил другой запрос
+            return false;
+        }
+    }
+
+    // удалить лайк у фильма и уменьшить счетчик, если лайк был
+    @Override
+    public boolean removeLike(int filmId, int userId) {
+        final String sqlQueryDelete = "delete from FILM_LIKE where FILM_ID = ? and USER_ID = ?";
+
+        return changeLikes(filmId, -1, () -> jdbcTemplate.update(sqlQueryDelete, filmId, userId) > 0);
+    }
+
+    // применить пакет лайков и отмен лайков в одной транзакции;
+    // для каждой операции возвращается, изменила ли она FILM_LIKE
+    @Override
+    public boolean[] applyLikes(List<LikeMutation> mutations) {
+        final String sqlQueryInsert = "insert into FILM_LIKE (FILM_ID, USER_ID) " +
+                "select ?, ? where not exists " +
+                "(select 1 from FILM_LIKE where FILM_ID = ? and USER_ID = ?)";
+        final String sqlQueryDelete = "delete from FILM_LIKE where FILM_ID = ? and USER_ID = ?";
+        final String sqlQueryCount = "update FILMS set LIKES = LIKES + ? where FILM_ID = ?";
+
+        // подряд идущие операции одного типа уходят одним пакетом, порядок операций сохраняется
+        final boolean[] changed = new boolean[mutations.size()];
+        final Map<Integer, Integer> deltas = new HashMap<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            int start = 0;
+            while (start < mutations.size()) {
+                final MutationAction action = mutations.get(start).getAction();
+                final List<Object[]> batchArgs = new ArrayList<>();
+                int end = start;
+                while (end < mutations.size() && mutations.get(end).getAction() == action) {
+                    LikeMutation mutation = mutations.get(end++);
+                    batchArgs.add(action == MutationAction.ADD
+                            ? new Object[]{mutation.getFilmId(), mutation.getUserId(),
+                                    mutation.getFilmId(), mutation.getUserId()}
+                            : new Object[]{mutation.getFilmId(), mutation.getUserId()});
+                }
+
+                int[] rowCounts = jdbcTemplate.batchUpdate(
+                        action == MutationAction.ADD ? sqlQueryInsert : sqlQueryDelete, batchArgs);
+                for (int i = 0; i < rowCounts.length; i++) {
+                    if (rowCounts[i] > 0) {
+                        changed[start + i] = true;
+                        deltas.merge(mutations.get(start + i).getFilmId(),
+                                action == MutationAction.ADD ? 1 : -1, Integer::sum);
+                    }
+                }
+                start = end;
             }
-            stmt.setInt(6, film.getTotalLikes());
-            stmt.setInt(7, film.getId());
-            return stmt;
-        }, keyHolder);
 
-        setFilmGenres(film);
+            if (!likeCounters.isWriteBehind()) {
+                final List<Object[]> countArgs = new ArrayList<>();
+                deltas.forEach((filmId, delta) -> countArgs.add(new Object[]{delta, filmId}));
+                jdbcTemplate.batchUpdate(sqlQueryCount, countArgs);
+            }
+        });
+        if (likeCounters.isWriteBehind()) {
+            deltas.forEach(likeCounters::add);
+        }
+        return changed;
     }
 
-    // добавить лайк фильму
-    public void addLike(int filmId, int userId) {
-        final String sqlQuery = "merge into FILM_LIKE (FILM_ID, USER_ID) values (?, ?)";
-        jdbcTemplate.update(sqlQuery, filmId, userId);
+    // проверить, есть ли фильм в базе
+    @Override
+    public boolean exists(int id) {
+        final String sqlQuery = "select exists(select 1 from FILMS where FILM_ID = ?)";
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sqlQuery, Boolean.class, id));
     }
 
-    // удалить лайк у фильма
-    public void removeLike(int filmId, int userId) {
-        final String sqlQuery = "delete from FILM_LIKE where FILM_ID = ? and USER_ID = ?";
-        jdbcTemplate.update(sqlQuery, filmId, userId);
+    // выбрать из переданных ID те, что есть в базе
+    @Override
+    public Set<Integer> getExistingIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return new HashSet<>();
+        }
+
+        final String sqlQuery = "select FILM_ID from FILMS where FILM_ID = any(?)";
+        return new HashSet<>(jdbcTemplate.query(sqlQuery, (rs, rowNum) -> rs.getInt("FILM_ID"),
+                (Object) ids.toArray(new Integer[0])));
     }
 
     // получить список самых популярных фильмов
     @Override
     public List<Film> getTopFilms(Integer size) {
-        final String sql = "select FILM_ID, NAME, DESCRIPTION, RELEASE_DATE, MPA, DURATION, LIKES " +
-                "from FILMS order by LIKES desc limit ?";
-        final List<Film> films = jdbcTemplate.query(sql, FilmDbStorage::makeFilm, size);
+        final String sql = FILM_SELECT + "order by f.LIKES desc, f.FILM_ID limit ?";
+        final List<Film> films = jdbcTemplate.query(sql, this::makeFilm, size);
 
-        films.forEach(this::loadFilmMpa);
-        films.forEach(this::loadFilmGenres);
-        films.forEach(this::loadFilmLikes);
+        loadFilmsData(films);
         return films;
     }
 
@@ -160,7 +339,7 @@ public class FilmDbStorage implements FilmStorage {
     // ---------------------------------------------
 
     // создать объект фильма
-    static Film makeFilm(ResultSet rs, int id) throws SQLException {
+    Film makeFilm(ResultSet rs, int id) throws SQLException {
         Film film = new Film(rs.getInt("FILM_ID"),
                 rs.getString("NAME"),
                 rs.getInt("LIKES")
@@ -177,56 +356,191 @@ public class FilmDbStorage implements FilmStorage {
             film.setReleaseDate(rs.getDate("RELEASE_DATE").toLocalDate());
         }
         if (rs.getInt("MPA") > 0) {
-            film.setMpa(new Mpa(rs.getInt("MPA"), null));
+            film.setMpa(getMpa(rs.getInt("MPA")));
         }
         return film;
     }
 
-    // добавить жанры фильма в базу
-    private void setFilmGenres(Film film) {
-        final String sqlQueryDelete = "delete from FILM_GENRE where FILM_ID = ?";
+    // записать жанры фильма разницей с текущими: удаленные жанры стираются одним запросом,
+    // добавленные вставляются пакетом, неизменные строки не трогаются
+    private void setFilmGenres(int filmId, Set<Genre> genres) {
+        final String sqlQuerySelect = "select GENRE_ID from FILM_GENRE where FILM_ID = ?";
+        final String sqlQueryDelete = "delete from FILM_GENRE where FILM_ID = ? and GENRE_ID = any(?)";
+
+        final Set<Integer> current = new HashSet<>(jdbcTemplate.queryForList(sqlQuerySelect, Integer.class, filmId));
+        final Set<Integer> target = getGenreIds(genres);
+
+        final Set<Integer> removed = new HashSet<>(current);
+        removed.removeAll(target);
+        if (!removed.isEmpty()) {
+            jdbcTemplate.update(sqlQueryDelete, filmId, removed.toArray(new Integer[0]));
+        }
+
+        target.removeAll(current);
+        insertFilmGenres(filmId, target);
+    }
+
+    // вставить жанры фильма одним пакетом
+    private void insertFilmGenres(int filmId, Set<Integer> genreIds) {
         final String sqlQueryInsert = "insert into FILM_GENRE (FILM_ID, GENRE_ID) values (?, ?)";
 
-        jdbcTemplate.update(sqlQueryDelete, film.getId());
-        if (film.getGenres() == null || film.getGenres().isEmpty()) {
+        if (genreIds.isEmpty()) {
             return;
         }
-        for (Genre genre : film.getGenres()) {
-            jdbcTemplate.update(sqlQueryInsert, film.getId(), genre.getId());
+        final List<Object[]> batchArgs = new ArrayList<>();
+        for (Integer genreId : genreIds) {
+            batchArgs.add(new Object[]{filmId, genreId});
         }
+        jdbcTemplate.batchUpdate(sqlQueryInsert, batchArgs);
     }
 
-    // выгрузить жанры фильма из базы
-    private void loadFilmGenres(Film film) {
-        final String sqlQuery = "select g.GENRE_ID, g.GENRE " +
-                "from GENRES g, FILM_GENRE fg " +
-                "where fg.FILM_ID = ? " +
-                "and fg.GENRE_ID = g.GENRE_ID";
-
-        List<Genre> genres = jdbcTemplate.query(sqlQuery,
-                (rs, rowNum) -> new Genre(rs.getInt("GENRE_ID"), rs.getString("GENRE")),
-                film.getId());
-        film.setGenres(new HashSet<>(genres));
+    // получить ID жанров; null считается пустым списком
+    private static Set<Integer> getGenreIds(Set<Genre> genres) {
+        final Set<Integer> ids = new LinkedHashSet<>();
+        if (genres != null) {
+            for (Genre genre : genres) {
+                ids.add(genre.getId());
+            }
+        }
+        return ids;
     }
 
-    // выгрузить из базы список лайков
-    private void loadFilmLikes(Film film) {
-        final String sqlQuery = "select * from FILM_LIKE where FILM_ID = ?";
+    // обновить только переданные в запросе колонки фильма; false, если фильма нет в базе
+    private boolean updateColumns(int filmId, FilmPatch patch) {
+        final List<String> columns = new ArrayList<>();
+        final List<Object> args = new ArrayList<>();
 
-        List<Integer> likes = jdbcTemplate.query(sqlQuery,
-                (rs, rowNum) -> rs.getInt("USER_ID"), film.getId());
-        film.setLikes(new HashSet<>(likes));
+        if (patch.isChanged(FilmPatch.Field.NAME)) {
+            columns.add("NAME = ?");
+            args.add(patch.getName());
+        }
+        if (patch.isChanged(FilmPatch.Field.DESCRIPTION)) {
+            columns.add("DESCRIPTION = ?");
+            args.add(patch.getDescription());
+        }
+        if (patch.isChanged(FilmPatch.Field.RELEASE_DATE)) {
+            columns.add("RELEASE_DATE = ?");
+            args.add(patch.getReleaseDate() == null ? null : Date.valueOf(patch.getReleaseDate()));
+        }
+        if (patch.isChanged(FilmPatch.Field.MPA)) {
+            columns.add("MPA = ?");
+            args.add(patch.getMpa() == null ? null : patch.getMpa().getId());
+        }
+        if (patch.isChanged(FilmPatch.Field.DURATION)) {
+            columns.add("DURATION = ?");
+            args.add(patch.getDuration());
+        }
+        args.add(filmId);
+
+        final String sqlQuery = "update FILMS set " + String.join(", ", columns) + " where FILM_ID = ?";
+        return jdbcTemplate.update(sqlQuery, args.toArray()) > 0;
     }
 
-    // присвоить фильму рейтинг
-    private void loadFilmMpa(Film film) {
+    // заполнить параметры NAME, DESCRIPTION, RELEASE_DATE, MPA и DURATION запроса
+    private static void setFilmFields(PreparedStatement stmt, Film film) throws SQLException {
+        stmt.setString(1, film.getName());
+        if (film.getDescription() == null) {
+            stmt.setNull(2, Types.NULL);
+        } else {
+            stmt.setString(2, film.getDescription());
+        }
+        if (film.getReleaseDate() == null) {
+            stmt.setNull(3, Types.NULL);
+        } else {
+            stmt.setDate(3, Date.valueOf(film.getReleaseDate()));
+        }
         if (film.getMpa() == null) {
+            stmt.setNull(4, Types.NULL);
+        } else {
+            stmt.setInt(4, film.getMpa().getId());
+        }
+        if (film.getDuration() == null) {
+            stmt.setNull(5, Types.NULL);
+        } else {
+            stmt.setInt(5, film.getDuration());
+        }
+    }
+
+    // изменить FILM_LIKE и, если строка действительно изменилась, счетчик LIKES:
+    // при отложенной записи — в памяти, иначе в той же транзакции
+    private boolean changeLikes(int filmId, int delta, BooleanSupplier likeStatement) {
+        if (likeCounters.isWriteBehind()) {
+            if (!likeStatement.getAsBoolean()) {
+                return false;
+            }
+            likeCounters.add(filmId, delta);
+            return true;
+        }
+
+        final String sqlQueryCount = "update FILMS set LIKES = LIKES + ? where FILM_ID = ?";
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            if (!likeStatement.getAsBoolean()) {
+                return false;
+            }
+            jdbcTemplate.update(sqlQueryCount, delta, filmId);
+            return true;
+        }));
+    }
+
+    // догрузить пачку фильмов, передать их дальше и очистить пачку
+    private void streamChunk(List<Film> chunk, Consumer<Film> action) {
+        loadFilmsData(chunk);
+        chunk.forEach(action);
+        chunk.clear();
+    }
+
+    // выгрузить из базы жанры и лайки для списка фильмов:
+    // по одному запросу на таблицу независимо от количества фильмов
+    private void loadFilmsData(List<Film> films) {
+        loadFilmsData(films, true);
+    }
+
+    private void loadFilmsData(List<Film> films, boolean loadLikes) {
+        if (films.isEmpty()) {
             return;
         }
 
-        final String sqlQuery = "select MPA_NAME from MPA where MPA_ID = ?";
-        List<String> mpaNames = jdbcTemplate.query(sqlQuery,
-                (rs, rowNum) -> rs.getString("MPA_NAME"), film.getMpa().getId());
-        film.getMpa().setName(mpaNames.get(0));
+        final Map<Integer, Film> filmsById = new HashMap<>();
+        for (Film film : films) {
+            film.setGenres(new HashSet<>());
+            film.setLikes(new HashSet<>());
+            filmsById.put(film.getId(), film);
+        }
+        final Integer[] filmIds = filmsById.keySet().toArray(new Integer[0]);
+
+        loadFilmGenres(filmsById, filmIds);
+        if (loadLikes) {
+            loadFilmLikes(filmsById, filmIds);
+        }
+    }
+
+    // выгрузить жанры фильмов из базы
+    private void loadFilmGenres(Map<Integer, Film> filmsById, Integer[] filmIds) {
+        final String sqlQuery = "select FILM_ID, GENRE_ID from FILM_GENRE where FILM_ID = any(?)";
+
+        jdbcTemplate.query(sqlQuery, (RowCallbackHandler) rs -> filmsById.get(rs.getInt("FILM_ID"))
+                        .getGenres().add(getGenre(rs.getInt("GENRE_ID"))),
+                (Object) filmIds);
+    }
+
+    // получить жанр из справочника; если справочник еще не обновлен, вернуть жанр без названия
+    private Genre getGenre(int genreId) {
+        final Genre genre = genreStorage.get(genreId);
+        return genre != null ? genre : new Genre(genreId, null);
+    }
+
+    // получить рейтинг из справочника; если справочник еще не обновлен, вернуть рейтинг без названия
+    private Mpa getMpa(int mpaId) {
+        final Mpa mpa = mpaStorage.get(mpaId);
+        return mpa != null ? mpa : new Mpa(mpaId, null);
+    }
+
+    // выгрузить из базы списки лайков
+    private void loadFilmLikes(Map<Integer, Film> filmsById, Integer[] filmIds) {
+        final String sqlQuery = "select FILM_ID, USER_ID from FILM_LIKE where FILM_ID = any(?)";
+
+        jdbcTemplate.query(sqlQuery, (RowCallbackHandler) rs -> filmsById.get(rs.getInt("FILM_ID"))
+                        .getLikes().add(rs.getInt("USER_ID")),
+                (Object) filmIds);
     }
 }
@@ -0,0 +1,115 @@
+package ru.yandex.practicum.filmorate.storage.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// счетчики лайков в памяти с отложенной записью в FILMS.LIKES:
+// лайки одного фильма не выстраиваются в очередь за блокировкой его строки;
+// в базу пишется не накопленная разница, а пересчет по FILM_LIKE, а чтение берет
+// только счетчик из базы, поэтому ни один экземпляр приложения не учтет лайк дважды;
+// счетчик в базе отстает от лайков не больше чем на интервал записи
+@Component
+@Slf4j
+public class FilmLikeCounters {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean writeBehind;
+
+    // накопленные, но еще не записанные в базу изменения счетчиков
+    private final Map<Integer, LongAdder> pending = new ConcurrentHashMap<>();
+
+    public FilmLikeCounters(JdbcTemplate jdbcTemplate,
+                            @Value("${filmorate.likes.write-behind:false}") boolean writeBehind) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.writeBehind = writeBehind;
+    }
+
+    // включена ли отложенная запись счетчиков
+    public boolean isWriteBehind() {
+        return writeBehind;
+    }
+
+    // пересчитать FILMS.LIKES по FILM_LIKE: при аварийной остановке
+    // незаписанные изменения счетчиков теряются, а сами лайки — нет
+    @PostConstruct
+    public void reconcile() {
+        if (!writeBehind) {
+            return;
+        }
+        final String sqlQuery = "update FILMS f set LIKES = " +
+                "(select count(*) from FILM_LIKE l where l.FILM_ID = f.FILM_ID)";
+        jdbcTemplate.update(sqlQuery);
+    }
+
+    // учесть изменение счетчика лайков фильма; если запись счетчика удалили из карты
+    // во время изменения, изменение повторяется на новой записи
+    public void add(int filmId, long delta) {
+        LongAdder adder = pending.computeIfAbsent(filmId, id -> new LongAdder());
+        adder.add(delta);
+        while (pending.get(filmId) != adder) {
+            adder = pending.computeIfAbsent(filmId, id -> new LongAdder());
+            adder.add(delta);
+        }
+    }
+
+    // получить число фильмов с незаписанными изменениями
+    int getPendingCount() {
+        return pending.size();
+    }
+
+    // пересчитать счетчики измененных фильмов по FILM_LIKE одним пакетом;
+    // лайк попадает в счетчики только после записи в FILM_LIKE, поэтому пересчет его учитывает.
+    // Каждый фильм пересчитывается по индексу FILM_LIKE не чаще раза за интервал записи
+    @Scheduled(fixedDelayString = "${filmorate.likes.flush-interval-ms:1000}")
+    @PreDestroy
+    public synchronized void flush() {
+        if (!writeBehind) {
+            return;
+        }
+
+        final List<Integer> filmIds = new ArrayList<>();
+        final List<LongAdder> adders = new ArrayList<>();
+        final List<Long> snapshots = new ArrayList<>();
+        final List<Object[]> batchArgs = new ArrayList<>();
+        for (Map.Entry<Integer, LongAdder> entry : pending.entrySet()) {
+            long delta = entry.getValue().sum();
+            if (delta == 0) {
+                pending.remove(entry.getKey(), entry.getValue());
+            } else {
+                filmIds.add(entry.getKey());
+                adders.add(entry.getValue());
+                snapshots.add(delta);
+                batchArgs.add(new Object[]{entry.getKey(), entry.getKey()});
+            }
+        }
+        if (batchArgs.isEmpty()) {
+            return;
+        }
+
+        final String sqlQuery = "update FILMS set LIKES = " +
+                "(select count(*) from FILM_LIKE where FILM_ID = ?) where FILM_ID = ?";
+        jdbcTemplate.batchUpdate(sqlQuery, batchArgs);
+
+        // вычитаем ровно снятое: изменения, пришедшие во время записи, пересчитаются в следующий раз;
+        // запись удаляется, только если после вычитания в ней ничего не осталось
+        for (int i = 0; i < filmIds.size(); i++) {
+            LongAdder adder = adders.get(i);
+            adder.add(-snapshots.get(i));
+            if (adder.sum() == 0) {
+                pending.remove(filmIds.get(i), adder);
+            }
+        }
+        log.debug("Flushed like counters: {} films", filmIds.size());
+    }
+}
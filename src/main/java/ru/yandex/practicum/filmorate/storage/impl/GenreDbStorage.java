@@ -1,43 +1,64 @@
 package ru.yandex.practicum.filmorate.storage.impl;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.storage.GenreStorage;
 
+import javax.annotation.PostConstruct;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.List;
 
 @Repository("genreDb")
+@Slf4j
 public class GenreDbStorage implements GenreStorage {
 
     private final JdbcTemplate jdbcTemplate;
 
+    // справочник жанров загружается целиком и читается без запросов к базе
+    private volatile ReferenceDictionary<Genre> genres;
+
     public GenreDbStorage(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
     }
 
+    // загрузить справочник; если содержимое не изменилось, остается прежний
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${filmorate.dictionaries.refresh-interval-ms:300000}",
+            initialDelayString = "${filmorate.dictionaries.refresh-interval-ms:300000}")
+    public void refresh() {
+        String sql = "select * from GENRES order by GENRE_ID";
+        final ReferenceDictionary<Genre> loaded = new ReferenceDictionary<>(
+                jdbcTemplate.query(sql, GenreDbStorage::makeGenre), Genre::getId, Genre::getName);
+        if (genres == null || !genres.getVersion().equals(loaded.getVersion())) {
+            genres = loaded;
+            log.info("Genres loaded: {} entries, version {}", loaded.getAll().size(), loaded.getVersion());
+        }
+    }
+
     // получить все жанры
     @Override
     public List<Genre> getAll() {
-        String sql = "select * from GENRES";
-        final List<Genre> genres = jdbcTemplate.query(sql, GenreDbStorage::makeGenre);
-        if (genres.isEmpty()) {
+        final List<Genre> all = genres.getAll();
+        if (all.isEmpty()) {
             return null;
         }
-        return genres;
+        return all;
     }
 
     // получить жанр
     @Override
     public Genre get(int id) {
-        final String sql = "select * from GENRES where GENRE_ID = ?";
-        final List<Genre> genres = jdbcTemplate.query(sql, GenreDbStorage::makeGenre, id);
-        if (genres.isEmpty()) {
-            return null;
-        }
-        return genres.get(0);
+        return genres.get(id);
+    }
+
+    // получить версию справочника
+    @Override
+    public String getVersion() {
+        return genres.getVersion();
     }
 
     // создать объект жанра Genre
@@ -0,0 +1,90 @@
+package ru.yandex.practicum.filmorate.storage.impl;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// генератор ID по схеме hi/lo: последовательность базы выдает номер блока (hi),
+// а ID внутри блока (lo) раздаются из памяти без обращения к базе;
+// блок с номером n содержит ID от n * blockSize + 1 до (n + 1) * blockSize,
+// поэтому узлы, которые берут блоки из одной последовательности, не пересекаются;
+// размер блока нельзя менять, пока в базе есть выданные ID
+final class HiLoSequence {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final String sequenceName;
+    private final int blockSize;
+
+    private volatile Block block = new Block(1, 0);
+
+
+    HiLoSequence(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                 String sequenceName, int blockSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.sequenceName = sequenceName;
+        this.blockSize = blockSize;
+    }
+
+    // сдвинуть последовательность так, чтобы новые блоки начинались после уже занятых ID;
+    // нужно для данных, добавленных до появления последовательности; проверка и сдвиг идут
+    // под блокировкой строки последовательности в ID_BLOCK_LOCKS, иначе два узла, запущенные
+    // одновременно, могли бы оба вернуть последовательность назад и получить один и тот же блок
+    void skipExisting(String tableName, String idColumn) {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.queryForObject("select SEQUENCE_NAME from ID_BLOCK_LOCKS where SEQUENCE_NAME = ? for update",
+                    String.class, sequenceName);
+            final Integer maxId = jdbcTemplate.queryForObject(
+                    String.format("select coalesce(max(%s), 0) from %s", idColumn, tableName), Integer.class);
+            final Long nextBlock = jdbcTemplate.queryForObject(
+                    "select BASE_VALUE from INFORMATION_SCHEMA.SEQUENCES where SEQUENCE_NAME = ?",
+                    Long.class, sequenceName);
+            final long firstFreeBlock = (maxId + blockSize - 1) / blockSize;
+            if (nextBlock == null || nextBlock < firstFreeBlock) {
+                jdbcTemplate.execute(
+                        String.format("alter sequence %s restart with %d", sequenceName, firstFreeBlock));
+            }
+        });
+    }
+
+    // получить следующий ID; обращение к базе нужно только раз в blockSize вызовов
+    int next() {
+        while (true) {
+            final Block current = block;
+            final long id = current.next.getAndIncrement();
+            if (id <= current.max) {
+                return Math.toIntExact(id);
+            }
+            synchronized (this) {
+                if (block == current) {
+                    block = fetchBlock();
+                }
+            }
+        }
+    }
+
+    // ---------------------------------------------
+    // ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ
+    // ---------------------------------------------
+
+    // зарезервировать следующий блок ID
+    private Block fetchBlock() {
+        final Long hi = jdbcTemplate.queryForObject(
+                String.format("select next value for %s", sequenceName), Long.class);
+        final long first = hi * blockSize + 1;
+        return new Block(first, first + blockSize - 1);
+    }
+
+    // блок ID: следующий свободный и последний
+    private static final class Block {
+        private final AtomicLong next;
+        private final long max;
+
+        private Block(long next, long max) {
+            this.next = new AtomicLong(next);
+            this.max = max;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package ru.yandex.practicum.filmorate.storage.impl;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+
+// ID фильмов и пользователей: каждый узел резервирует в базе блоки ID и раздает их из памяти,
+// поэтому ID известен до вставки и не требует отдельного запроса к базе
+@Component
+public class IdGenerator {
+
+    private final HiLoSequence films;
+    private final HiLoSequence users;
+
+
+    public IdGenerator(JdbcTemplate jdbcTemplate,
+                       TransactionTemplate transactionTemplate,
+                       @Value("${filmorate.ids.block-size:50}") int blockSize) {
+        this.films = new HiLoSequence(jdbcTemplate, transactionTemplate, "FILM_ID_BLOCKS", blockSize);
+        this.users = new HiLoSequence(jdbcTemplate, transactionTemplate, "USER_ID_BLOCKS", blockSize);
+    }
+
+    // продолжить выдачу после ID, которые уже есть в базе
+    @PostConstruct
+    public void init() {
+        films.skipExisting("FILMS", "FILM_ID");
+        users.skipExisting("USERS", "USER_ID");
+    }
+
+    // получить ID для нового фильма
+    public int nextFilmId() {
+        return films.next();
+    }
+
+    // получить ID для нового пользователя
+    public int nextUserId() {
+        return users.next();
+    }
+}
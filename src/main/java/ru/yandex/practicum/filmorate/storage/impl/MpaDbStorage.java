@@ -1,43 +1,64 @@
 package ru.yandex.practicum.filmorate.storage.impl;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.storage.MpaStorage;
 
+import javax.annotation.PostConstruct;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.List;
 
 @Repository("mpaDb")
+@Slf4j
 public class MpaDbStorage implements MpaStorage {
 
     private final JdbcTemplate jdbcTemplate;
 
+    // справочник рейтингов загружается целиком и читается без запросов к базе
+    private volatile ReferenceDictionary<Mpa> ratings;
+
     public MpaDbStorage(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
     }
 
+    // загрузить справочник; если содержимое не изменилось, остается прежний
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${filmorate.dictionaries.refresh-interval-ms:300000}",
+            initialDelayString = "${filmorate.dictionaries.refresh-interval-ms:300000}")
+    public void refresh() {
+        String sql = "select * from MPA order by MPA_ID";
+        final ReferenceDictionary<Mpa> loaded = new ReferenceDictionary<>(
+                jdbcTemplate.query(sql, MpaDbStorage::makeMpa), Mpa::getId, Mpa::getName);
+        if (ratings == null || !ratings.getVersion().equals(loaded.getVersion())) {
+            ratings = loaded;
+            log.info("MPA ratings loaded: {} entries, version {}", loaded.getAll().size(), loaded.getVersion());
+        }
+    }
+
     // получить все рейтинги
     @Override
     public List<Mpa> getAll() {
-        String sql = "select * from MPA";
-        final List<Mpa> mpaList = jdbcTemplate.query(sql, MpaDbStorage::makeMpa);
-        if (mpaList.isEmpty()) {
+        final List<Mpa> all = ratings.getAll();
+        if (all.isEmpty()) {
             return null;
         }
-        return mpaList;
+        return all;
     }
 
     // получить рейтинг
     @Override
     public Mpa get(int id) {
-        final String sql = "select * from MPA where MPA_ID = ?";
-        final List<Mpa> mpaList = jdbcTemplate.query(sql, MpaDbStorage::makeMpa, id);
-        if (mpaList.isEmpty()) {
-            return null;
-        }
-        return mpaList.get(0);
+        return ratings.get(id);
+    }
+
+    // получить версию справочника
+    @Override
+    public String getVersion() {
+        return ratings.getVersion();
     }
 
     // создать объект рейтинга (Mpa)
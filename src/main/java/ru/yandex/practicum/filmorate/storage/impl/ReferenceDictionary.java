@@ -0,0 +1,48 @@
+package ru.yandex.practicum.filmorate.storage.impl;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+// неизменяемый справочник с доступом по индексу массива, равному ID;
+// экземпляры записей общие для всех, кто получает их из справочника, поэтому сами записи
+// тоже должны быть неизменяемыми
+final class ReferenceDictionary<T> {
+
+    private final Object[] byId;
+    private final List<T> values;
+    private final String version;
+
+    ReferenceDictionary(List<T> values, ToIntFunction<T> idGetter, Function<T, String> nameGetter) {
+        int maxId = 0;
+        for (T value : values) {
+            maxId = Math.max(maxId, idGetter.applyAsInt(value));
+        }
+        this.byId = new Object[maxId + 1];
+        final StringBuilder content = new StringBuilder();
+        for (T value : values) {
+            int id = idGetter.applyAsInt(value);
+            byId[id] = value;
+            content.append(id).append('=').append(nameGetter.apply(value)).append(';');
+        }
+        this.values = Collections.unmodifiableList(values);
+        this.version = Integer.toHexString(content.toString().hashCode());
+    }
+
+    // получить запись по ID
+    @SuppressWarnings("unchecked")
+    T get(int id) {
+        return id >= 0 && id < byId.length ? (T) byId[id] : null;
+    }
+
+    // получить все записи по возрастанию ID
+    List<T> getAll() {
+        return values;
+    }
+
+    // получить версию содержимого: меняется, только если изменились ID или названия
+    String getVersion() {
+        return version;
+    }
+}
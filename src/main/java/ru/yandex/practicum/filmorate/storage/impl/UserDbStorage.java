@@ -1,11 +1,16 @@
 package ru.yandex.practicum.filmorate.storage.impl;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.GeneratedKeyHolder;
-import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.FriendMutation;
+import ru.yandex.practicum.filmorate.model.MutationAction;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserPatch;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
 import java.sql.Date;
@@ -14,18 +19,35 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Repository("usersDb")
 @RequiredArgsConstructor
 public class UserDbStorage implements UserStorage {
 
+    // сколько пользователей читается из курсора и догружается за один раз при выгрузке
+    private static final int STREAM_CHUNK_SIZE = 500;
+
     private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final IdGenerator idGenerator;
 
     // получить пользователя
     @Override
     public User get(int id) {
+        return get(id, true);
+    }
+
+    // получить пользователя; список друзей загружается, только если он нужен
+    @Override
+    public User get(int id, boolean loadFriends) {
         final String sqlQuery = "select USER_ID, EMAIL, LOGIN, USER_NAME, BIRTHDAY " +
                 "from USERS where USER_ID = ?";
         final List<User> users = jdbcTemplate.query(sqlQuery, UserDbStorage::makeUser, id);
@@ -34,30 +56,93 @@ public class UserDbStorage implements UserStorage {
             return null;
         }
 
-        User user = users.get(0);
-        loadUserFriends(user);
-        return user;
+        if (loadFriends) {
+            loadUsersFriends(users);
+        }
+        return users.get(0);
     }
 
     // получить всех пользователей
     @Override
     public List<User> getAll() {
-        final String sqlQuery = "select USER_ID, EMAIL, LOGIN, USER_NAME, BIRTHDAY from USERS";
+        final String sqlQuery = "select USER_ID, EMAIL, LOGIN, USER_NAME, BIRTHDAY from USERS order by USER_ID";
         final List<User> users = jdbcTemplate.query(sqlQuery, UserDbStorage::makeUser);
 
-        users.forEach(this::loadUserFriends);
+        loadUsersFriends(users);
+        return users;
+    }
+
+    // получить страницу пользователей с ID больше заданного
+    @Override
+    public List<User> getPage(int afterId, int limit) {
+        final String sqlQuery = "select USER_ID, EMAIL, LOGIN, USER_NAME, BIRTHDAY from USERS " +
+                "where USER_ID > ? order by USER_ID limit ?";
+        final List<User> users = jdbcTemplate.query(sqlQuery, UserDbStorage::makeUser, afterId, limit);
+
+        loadUsersFriends(users);
         return users;
     }
 
-    // добавить пользователя
+    // получить пользователей по списку ID в порядке этого списка
+    @Override
+    public List<User> getByIds(List<Integer> ids, boolean loadFriends) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        final String sqlQuery = "select USER_ID, EMAIL, LOGIN, USER_NAME, BIRTHDAY from USERS " +
+                "where USER_ID = any(?)";
+        final List<User> users = jdbcTemplate.query(sqlQuery, UserDbStorage::makeUser,
+                (Object) ids.toArray(new Integer[0]));
+        if (loadFriends) {
+            loadUsersFriends(users);
+        }
+
+        final Map<Integer, User> usersById = new HashMap<>();
+        users.forEach(user -> usersById.put(user.getId(), user));
+
+        final List<User> orderedUsers = new ArrayList<>(users.size());
+        for (Integer id : ids) {
+            User user = usersById.get(id);
+            if (user != null) {
+                orderedUsers.add(user);
+            }
+        }
+        return orderedUsers;
+    }
+
+    // выгрузить всех пользователей потоком, не собирая их в один список
+    @Override
+    public void streamAll(Consumer<User> action) {
+        final String sqlQuery = "select USER_ID, EMAIL, LOGIN, USER_NAME, BIRTHDAY from USERS order by USER_ID";
+
+        jdbcTemplate.query(connection -> {
+            PreparedStatement stmt = connection.prepareStatement(sqlQuery,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(STREAM_CHUNK_SIZE);
+            return stmt;
+        }, (ResultSetExtractor<Void>) rs -> {
+            final List<User> chunk = new ArrayList<>(STREAM_CHUNK_SIZE);
+            int rowNum = 0;
+            while (rs.next()) {
+                chunk.add(makeUser(rs, rowNum++));
+                if (chunk.size() == STREAM_CHUNK_SIZE) {
+                    streamChunk(chunk, action);
+                }
+            }
+            streamChunk(chunk, action);
+            return null;
+        });
+    }
+
+    // добавить пользователя; ID выдается генератором до вставки
     @Override
     public void add(User user) {
-        final String sqlQuery = "insert into USERS (EMAIL, LOGIN, USER_NAME, BIRTHDAY) " +
-                "values (?, ?, ?, ?)";
+        final String sqlQuery = "insert into USERS (EMAIL, LOGIN, USER_NAME, BIRTHDAY, USER_ID) " +
+                "values (?, ?, ?, ?, ?)";
 
-        KeyHolder keyHolder = new GeneratedKeyHolder();
-        jdbcTemplate.update(connection -> {
-            PreparedStatement stmt = connection.prepareStatement(sqlQuery, new String[]{"USER_ID"});
+        user.setId(idGenerator.nextUserId());
+        jdbcTemplate.update(sqlQuery, stmt -> {
             stmt.setString(1, user.getEmail());
             stmt.setString(2, user.getLogin());
             stmt.setString(3, user.getName());
@@ -67,67 +152,206 @@ public class UserDbStorage implements UserStorage {
             } else {
                 stmt.setDate(4, Date.valueOf(birthday));
             }
-            return stmt;
-        }, keyHolder);
+            stmt.setInt(5, user.getId());
+        });
     }
 
     // обновить данные о пользователе
     @Override
-    public void update(User user) {
+    public boolean update(User user) {
         final String sqlQuery = "update USERS " +
                 "set EMAIL = ?, LOGIN = ?, USER_NAME = ?, BIRTHDAY = ? " +
                 "where USER_ID = ?";
 
-        jdbcTemplate.update(sqlQuery,
+        return jdbcTemplate.update(sqlQuery,
                 user.getEmail(),
                 user.getLogin(),
                 user.getName(),
                 Date.valueOf(user.getBirthday()),
                 user.getId()
-        );
+        ) > 0;
+    }
+
+    // частично обновить пользователя: в UPDATE попадают только переданные колонки;
+    // false, если пользователя нет в базе
+    @Override
+    public boolean patch(int userId, UserPatch patch) {
+        if (!patch.hasChanges()) {
+            return exists(userId);
+        }
+
+        final List<String> columns = new ArrayList<>();
+        final List<Object> args = new ArrayList<>();
+
+        if (patch.isChanged(UserPatch.Field.EMAIL)) {
+            columns.add("EMAIL = ?");
+            args.add(patch.getEmail());
+        }
+        if (patch.isChanged(UserPatch.Field.LOGIN)) {
+            columns.add("LOGIN = ?");
+            args.add(patch.getLogin());
+        }
+        if (patch.isChanged(UserPatch.Field.NAME)) {
+            columns.add("USER_NAME = ?");
+            args.add(patch.getName());
+        }
+        if (patch.isChanged(UserPatch.Field.BIRTHDAY)) {
+            columns.add("BIRTHDAY = ?");
+            args.add(patch.getBirthday() == null ? null : Date.valueOf(patch.getBirthday()));
+        }
+        args.add(userId);
+
+        final String sqlQuery = "update USERS set " + String.join(", ", columns) + " where USER_ID = ?";
+        return jdbcTemplate.update(sqlQuery, args.toArray()) > 0;
     }
 
     // получить друзей пользователя
     @Override
     public List<User> getFriends(int userId) {
+        return getFriends(userId, true);
+    }
+
+    // получить друзей пользователя — со списками их друзей или без них
+    @Override
+    public List<User> getFriends(int userId, boolean loadFriends) {
         final String sql = "select USER_ID, EMAIL, LOGIN, USER_NAME, BIRTHDAY " +
                 "from USERS " +
                 "where USER_ID " +
-                "in (select FRIEND_ID from FRIENDS where USER_ID = ?)";
+                "in (select FRIEND_ID from FRIENDS where USER_ID = ?) " +
+                "order by USER_ID";
         List<User> friends = jdbcTemplate.query(sql, UserDbStorage::makeUser, userId);
 
-        friends.forEach(this::loadUserFriends);
+        if (loadFriends) {
+            loadUsersFriends(friends);
+        }
+        return friends;
+    }
+
+    // получить страницу друзей пользователя с ID больше заданного
+    @Override
+    public List<User> getFriendsPage(int userId, int afterId, int limit, boolean loadFriends) {
+        final String sql = "select u.USER_ID, u.EMAIL, u.LOGIN, u.USER_NAME, u.BIRTHDAY " +
+                "from FRIENDS f " +
+                "join USERS u on f.FRIEND_ID = u.USER_ID " +
+                "where f.USER_ID = ? " +
+                "and f.FRIEND_ID > ? " +
+                "order by f.FRIEND_ID " +
+                "limit ?";
+        List<User> friends = jdbcTemplate.query(sql, UserDbStorage::makeUser, userId, afterId, limit);
+
+        if (loadFriends) {
+            loadUsersFriends(friends);
+        }
         return friends;
     }
 
     // получить список общих друзей
     @Override
     public List<User> getCommonFriends(int idUser, int idOtherUser) {
+        return getCommonFriends(idUser, idOtherUser, true);
+    }
+
+    // получить список общих друзей — со списками их друзей или без них
+    @Override
+    public List<User> getCommonFriends(int idUser, int idOtherUser, boolean loadFriends) {
         final String sql = "select u.USER_ID, u.EMAIL, u.LOGIN, u.USER_NAME, u.BIRTHDAY " +
                 "from USERS u, FRIENDS f1, FRIENDS f2 " +
                 "where f1.USER_ID = ? " +
                 "and f2.USER_ID = ? " +
                 "and f1.FRIEND_ID = f2.FRIEND_ID " +
-                "and f1.FRIEND_ID = u.USER_ID";
+                "and f1.FRIEND_ID = u.USER_ID " +
+                "order by u.USER_ID";
 
         List<User> friends = jdbcTemplate.query(sql, UserDbStorage::makeUser, idUser, idOtherUser);
 
-        friends.forEach(this::loadUserFriends);
+        if (loadFriends) {
+            loadUsersFriends(friends);
+        }
         return friends;
     }
 
-    // добавить дружбу в базу
+    // получить ID друзей пользователя
     @Override
-    public void addFriend(int userId, int friendId) {
-        final String sqlQuery = "merge into FRIENDS (USER_ID, FRIEND_ID) values (?, ?)";
-        jdbcTemplate.update(sqlQuery, userId, friendId);
+    public Set<Integer> getFriendIds(int userId) {
+        final String sqlQuery = "select FRIEND_ID from FRIENDS where USER_ID = ?";
+        return new HashSet<>(jdbcTemplate.queryForList(sqlQuery, Integer.class, userId));
     }
 
-    // удалить дружбу из базы
+    // добавить дружбу в базу; false — дружба уже была;
+    // если пользователя нет, база отклонит запись по внешнему ключу
     @Override
-    public void removeFriend(int userId, int friendId) {
+    public boolean addFriend(int userId, int friendId) {
+        final String sqlQuery = "insert into FRIENDS (USER_ID, FRIEND_ID) " +
+                "select ?, ? where not exists " +
+                "(select 1 from FRIENDS where USER_ID = ? and FRIEND_ID = ?)";
+        try {
+            return jdbcTemplate.update(sqlQuery, userId, friendId, userId, friendId) > 0;
+        } catch (DuplicateKeyException e) {
+            // такую же дружбу параллельно добавил другой запрос
+            return false;
+        }
+    }
+
+    // удалить дружбу из базы; false — дружбы не было
+    @Override
+    public boolean removeFriend(int userId, int friendId) {
         final String sqlQuery = "delete from FRIENDS where USER_ID = ? and FRIEND_ID = ?";
-        jdbcTemplate.update(sqlQuery, userId, friendId);
+        return jdbcTemplate.update(sqlQuery, userId, friendId) > 0;
+    }
+
+    // применить пакет добавлений и удалений друзей в одной транзакции;
+    // для каждой операции возвращается, изменила ли она FRIENDS
+    @Override
+    public boolean[] applyFriends(List<FriendMutation> mutations) {
+        final String sqlQueryInsert = "insert into FRIENDS (USER_ID, FRIEND_ID) " +
+                "select ?, ? where not exists " +
+                "(select 1 from FRIENDS where USER_ID = ? and FRIEND_ID = ?)";
+        final String sqlQueryDelete = "delete from FRIENDS where USER_ID = ? and FRIEND_ID = ?";
+
+        // подряд идущие операции одного типа уходят одним пакетом, порядок операций сохраняется
+        final boolean[] changed = new boolean[mutations.size()];
+        transactionTemplate.executeWithoutResult(status -> {
+            int start = 0;
+            while (start < mutations.size()) {
+                final MutationAction action = mutations.get(start).getAction();
+                final List<Object[]> batchArgs = new ArrayList<>();
+                int end = start;
+                while (end < mutations.size() && mutations.get(end).getAction() == action) {
+                    FriendMutation mutation = mutations.get(end++);
+                    batchArgs.add(action == MutationAction.ADD
+                            ? new Object[]{mutation.getUserId(), mutation.getFriendId(),
+                                    mutation.getUserId(), mutation.getFriendId()}
+                            : new Object[]{mutation.getUserId(), mutation.getFriendId()});
+                }
+
+                int[] rowCounts = jdbcTemplate.batchUpdate(
+                        action == MutationAction.ADD ? sqlQueryInsert : sqlQueryDelete, batchArgs);
+                for (int i = 0; i < rowCounts.length; i++) {
+                    changed[start + i] = rowCounts[i] > 0;
+                }
+                start = end;
+            }
+        });
+        return changed;
+    }
+
+    // проверить, есть ли пользователь в базе
+    @Override
+    public boolean exists(int id) {
+        final String sqlQuery = "select exists(select 1 from USERS where USER_ID = ?)";
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sqlQuery, Boolean.class, id));
+    }
+
+    // выбрать из переданных ID те, что есть в базе
+    @Override
+    public Set<Integer> getExistingIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return new HashSet<>();
+        }
+
+        final String sqlQuery = "select USER_ID from USERS where USER_ID = any(?)";
+        return new HashSet<>(jdbcTemplate.query(sqlQuery, (rs, rowNum) -> rs.getInt("USER_ID"),
+                (Object) ids.toArray(new Integer[0])));
     }
 
 
@@ -148,11 +372,28 @@ public class UserDbStorage implements UserStorage {
         return user;
     }
 
-    // выгрузить из базы список ID друзей и добавить пользователю
-    private void loadUserFriends(User user) {
-        final String sqlQuery = "select * from FRIENDS where USER_ID = ?";
-        List<Integer> friends = jdbcTemplate.query(sqlQuery,
-                (rs, rowNum) -> rs.getInt("FRIEND_ID"), user.getId());
-        user.setFriends(new HashSet<>(friends));
+    // догрузить пачку пользователей, передать их дальше и очистить пачку
+    private void streamChunk(List<User> chunk, Consumer<User> action) {
+        loadUsersFriends(chunk);
+        chunk.forEach(action);
+        chunk.clear();
+    }
+
+    // выгрузить из базы списки ID друзей для списка пользователей одним запросом
+    private void loadUsersFriends(List<User> users) {
+        if (users.isEmpty()) {
+            return;
+        }
+
+        final Map<Integer, User> usersById = new HashMap<>();
+        for (User user : users) {
+            user.setFriends(new HashSet<>());
+            usersById.put(user.getId(), user);
+        }
+
+        final String sqlQuery = "select USER_ID, FRIEND_ID from FRIENDS where USER_ID = any(?)";
+        jdbcTemplate.query(sqlQuery, (RowCallbackHandler) rs -> usersById.get(rs.getInt("USER_ID"))
+                        .getFriends().add(rs.getInt("FRIEND_ID")),
+                (Object) usersById.keySet().toArray(new Integer[0]));
     }
 }
@@ -0,0 +1,123 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// списки смежности в памяти: для каждого ID — отсортированный массив int без упаковки в Integer.
+// Массивы не меняются после публикации: изменение заменяет массив целиком
+class AdjacencyMap {
+
+    static final int[] EMPTY = new int[0];
+
+    private final Map<Integer, int[]> lists = new ConcurrentHashMap<>();
+
+    // загрузить списки запросом, который возвращает пары (ID, связанный ID),
+    // отсортированные по обоим столбцам
+    void load(JdbcTemplate jdbcTemplate, String sqlQuery) {
+        final Map<Integer, int[]> loaded = new HashMap<>();
+        jdbcTemplate.query(sqlQuery, (ResultSetExtractor<Void>) rs -> {
+            int currentId = 0;
+            int[] buffer = new int[16];
+            int size = 0;
+            while (rs.next()) {
+                int id = rs.getInt(1);
+                if (id != currentId) {
+                    if (size > 0) {
+                        loaded.put(currentId, Arrays.copyOf(buffer, size));
+                    }
+                    currentId = id;
+                    size = 0;
+                }
+                if (size == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, size * 2);
+                }
+                buffer[size++] = rs.getInt(2);
+            }
+            if (size > 0) {
+                loaded.put(currentId, Arrays.copyOf(buffer, size));
+            }
+            return null;
+        });
+
+        replaceAll(loaded);
+    }
+
+    // заменить все списки разом; массивы должны быть отсортированы
+    void replaceAll(Map<Integer, int[]> loaded) {
+        lists.clear();
+        lists.putAll(loaded);
+    }
+
+    // получить отсортированный список; массив нельзя изменять
+    int[] get(int id) {
+        return lists.getOrDefault(id, EMPTY);
+    }
+
+    // добавить связь
+    void add(int id, int value) {
+        lists.compute(id, (key, current) -> insert(current == null ? EMPTY : current, value));
+    }
+
+    // добавить связь, если в списке меньше maxSize значений
+    void add(int id, int value, int maxSize) {
+        lists.compute(id, (key, current) -> {
+            if (current == null) {
+                return insert(EMPTY, value);
+            }
+            return current.length < maxSize ? insert(current, value) : current;
+        });
+    }
+
+    // удалить связь
+    void remove(int id, int value) {
+        lists.computeIfPresent(id, (key, current) -> {
+            int[] updated = remove(current, value);
+            return updated.length == 0 ? null : updated;
+        });
+    }
+
+    // получить отсортированные ID, у которых есть хотя бы одна связь
+    int[] keys() {
+        return lists.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    // получить число ID, у которых есть хотя бы одна связь
+    int size() {
+        return lists.size();
+    }
+
+    // ---------------------------------------------
+    // ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ
+    // ---------------------------------------------
+
+    // получить копию массива с добавленным значением; если значение уже есть — тот же массив
+    private static int[] insert(int[] values, int value) {
+        final int position = Arrays.binarySearch(values, value);
+        if (position >= 0) {
+            return values;
+        }
+        final int index = -position - 1;
+        final int[] updated = new int[values.length + 1];
+        System.arraycopy(values, 0, updated, 0, index);
+        updated[index] = value;
+        System.arraycopy(values, index, updated, index + 1, values.length - index);
+        return updated;
+    }
+
+    // получить копию массива без значения; если значения нет — тот же массив
+    private static int[] remove(int[] values, int value) {
+        final int index = Arrays.binarySearch(values, value);
+        if (index < 0) {
+            return values;
+        }
+        final int[] updated = new int[values.length - 1];
+        System.arraycopy(values, 0, updated, 0, index);
+        System.arraycopy(values, index + 1, updated, index, values.length - index - 1);
+        return updated;
+    }
+}
@@ -0,0 +1,97 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.impl.FilmLikeCounters;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+// рейтинг фильмов по количеству лайков, который хранится в памяти
+// и обновляется по событиям лайков вместо сортировки FILMS на каждый запрос
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FilmLeaderboard {
+
+    // больше лайков — выше; при равенстве выше фильм с меньшим ID
+    private static final Comparator<Entry> ORDER = Comparator
+            .comparingLong((Entry entry) -> entry.likes).reversed()
+            .thenComparingInt(entry -> entry.filmId);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FilmLikeCounters likeCounters;
+
+    private final NavigableSet<Entry> ranking = new ConcurrentSkipListSet<>(ORDER);
+    private final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+
+    // построить рейтинг по таблице FILMS
+    @PostConstruct
+    public void rebuild() {
+        likeCounters.flush();
+        ranking.clear();
+        entries.clear();
+        jdbcTemplate.query("select FILM_ID, LIKES from FILMS",
+                (RowCallbackHandler) rs -> put(rs.getInt("FILM_ID"), rs.getInt("LIKES")));
+        log.info("Film leaderboard built: {} films", entries.size());
+    }
+
+    // добавить фильм в рейтинг или задать ему количество лайков
+    public void put(int filmId, long likes) {
+        entries.compute(filmId, (id, current) -> replace(current, new Entry(id, likes)));
+    }
+
+    // изменить количество лайков фильма на delta
+    public void changeLikes(int filmId, long delta) {
+        entries.compute(filmId, (id, current) ->
+                replace(current, new Entry(id, (current == null ? 0 : current.likes) + delta)));
+    }
+
+    // получить ID самых популярных фильмов по убыванию лайков
+    public List<Integer> getTop(int count) {
+        final List<Integer> filmIds = new ArrayList<>(Math.min(count, entries.size()));
+        for (Entry entry : ranking) {
+            if (filmIds.size() == count) {
+                break;
+            }
+            // запись могла устареть, пока параллельно меняются лайки фильма
+            if (entries.get(entry.filmId) == entry) {
+                filmIds.add(entry.filmId);
+            }
+        }
+        return filmIds;
+    }
+
+    // ---------------------------------------------
+    // ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ
+    // ---------------------------------------------
+
+    // заменить запись фильма в рейтинге; вызывается внутри entries.compute,
+    // поэтому записи одного фильма меняются строго по очереди
+    private Entry replace(Entry current, Entry updated) {
+        if (current != null) {
+            ranking.remove(current);
+        }
+        ranking.add(updated);
+        return updated;
+    }
+
+    private static final class Entry {
+        private final int filmId;
+        private final long likes;
+
+        private Entry(int filmId, long likes) {
+            this.filmId = filmId;
+            this.likes = likes;
+        }
+    }
+}
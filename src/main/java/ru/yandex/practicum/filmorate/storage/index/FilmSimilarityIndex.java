@@ -0,0 +1,235 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// «с этим фильмом также лайкают»: для каждого фильма заранее посчитаны top-K похожих
+// по косинусной мере над лайками: общие лайки / sqrt(лайки первого * лайки второго).
+// Полный пересчет идет параллельно по частям списка фильмов, а между пересчетами
+// строки фильмов, затронутых лайками, пересчитывает по одной фоновая задача;
+// до тех пор отдается прежняя строка. Рабочие массивы размером с наибольший ID фильма
+// есть только у фоновой задачи и у потоков полного пересчета, пока он идет
+@Component
+@Slf4j
+public class FilmSimilarityIndex {
+
+    // сколько фильмов обрабатывает одна задача при полном пересчете
+    private static final int BUILD_THRESHOLD = 64;
+
+    private final LikeGraph likeGraph;
+    private final int topK;
+    private final int maxDirtyPerLike;
+
+    // рабочие массивы фонового пересчета строк
+    private final Scratch refreshScratch = new Scratch();
+
+    // ID похожих фильмов по убыванию сходства
+    private volatile Map<Integer, int[]> neighbors = new ConcurrentHashMap<>();
+
+    // фильмы, строки которых устарели из-за лайков после пересчета
+    private final Set<Integer> dirty = ConcurrentHashMap.newKeySet();
+
+    // полный пересчет исключает пересчет отдельных строк: иначе строка, исправленная
+    // в прежней карте, пропала бы при замене карты вместе с пометкой об устаревании
+    private final ReadWriteLock rebuildLock = new ReentrantReadWriteLock();
+
+    public FilmSimilarityIndex(LikeGraph likeGraph,
+                               @Value("${filmorate.similar.films.top-k:20}") int topK,
+                               @Value("${filmorate.similar.films.max-dirty-per-like:100}") int maxDirtyPerLike) {
+        this.likeGraph = likeGraph;
+        this.topK = topK;
+        this.maxDirtyPerLike = maxDirtyPerLike;
+    }
+
+    // пересчитать похожие фильмы для всех фильмов
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${filmorate.similar.films.rebuild-interval-ms:3600000}",
+            initialDelayString = "${filmorate.similar.films.rebuild-interval-ms:3600000}")
+    public void rebuild() {
+        rebuildLock.writeLock().lock();
+        try {
+            // лайки, пришедшие во время пересчета, снова пометят свои фильмы, и эти пометки
+            // сохранятся до замены карты, потому что отдельные строки сейчас не пересчитываются
+            dirty.clear();
+            final int[] filmIds = likeGraph.getLikedFilmIds();
+            final Map<Integer, int[]> built = new ConcurrentHashMap<>(filmIds.length * 2);
+            ForkJoinPool.commonPool().invoke(
+                    new BuildTask(filmIds, 0, filmIds.length, built, new ConcurrentLinkedQueue<>()));
+            neighbors = built;
+            log.info("Film similarity index built: {} films", built.size());
+        } finally {
+            rebuildLock.writeLock().unlock();
+        }
+    }
+
+    // учесть изменение лайка: устаревают строки самого фильма и фильмов,
+    // которые лайкнул тот же пользователь; у пользователя с тысячами лайков помечаются
+    // только первые maxDirtyPerLike таких фильмов, остальные исправит полный пересчет
+    public void onLikeChanged(int filmId, int userId) {
+        dirty.add(filmId);
+        final int[] likedFilms = likeGraph.getLikedFilms(userId);
+        for (int i = 0; i < Math.min(likedFilms.length, maxDirtyPerLike); i++) {
+            dirty.add(likedFilms[i]);
+        }
+    }
+
+    // пересчитать устаревшие строки
+    @Scheduled(fixedDelayString = "${filmorate.similar.films.refresh-interval-ms:1000}")
+    public synchronized void refreshDirty() {
+        for (Integer filmId : dirty.toArray(new Integer[0])) {
+            refreshRow(filmId);
+        }
+    }
+
+    // получить ID самых похожих фильмов по убыванию сходства
+    public int[] getSimilar(int filmId, int count) {
+        final int[] row = neighbors.get(filmId);
+        if (row == null) {
+            return AdjacencyMap.EMPTY;
+        }
+        return Arrays.copyOf(row, Math.min(count, row.length));
+    }
+
+    // получить сколько похожих фильмов хранится на фильм
+    public int getTopK() {
+        return topK;
+    }
+
+    // ---------------------------------------------
+    // ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ
+    // ---------------------------------------------
+
+    // пересчитать строку, если она устарела; пересчеты одного фильма выполняются по очереди,
+    // поэтому строка, посчитанная раньше, не заменит более новую; во время полного пересчета
+    // строка остается помеченной и будет пересчитана после него
+    private void refreshRow(int filmId) {
+        final Lock lock = rebuildLock.readLock();
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            neighbors.compute(filmId, (id, row) -> dirty.remove(id) ? computeRow(id, refreshScratch) : row);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // посчитать top-K похожих для одного фильма: обойти пользователей, лайкнувших фильм,
+    // и их лайки, набирая число общих лайков в массиве по ID фильма
+    private int[] computeRow(int filmId, Scratch work) {
+        final int[] likers = likeGraph.getLikers(filmId);
+        if (likers.length == 0) {
+            return null;
+        }
+
+        int touched = 0;
+        for (int userId : likers) {
+            for (int otherId : likeGraph.getLikedFilms(userId)) {
+                if (otherId == filmId) {
+                    continue;
+                }
+                work.ensureCapacity(otherId, touched);
+                if (work.counts[otherId]++ == 0) {
+                    work.touched[touched++] = otherId;
+                }
+            }
+        }
+
+        // отбор top-K вставками: K мало, а массивы не пересоздаются
+        final int[] bestIds = new int[Math.min(topK, touched)];
+        final float[] bestScores = new float[bestIds.length];
+        int size = 0;
+        for (int i = 0; i < touched; i++) {
+            int otherId = work.touched[i];
+            float score = (float) (work.counts[otherId]
+                    / Math.sqrt((double) likers.length * likeGraph.getLikers(otherId).length));
+            work.counts[otherId] = 0;
+
+            if (size == bestIds.length && !isBetter(score, otherId, bestScores[size - 1], bestIds[size - 1])) {
+                continue;
+            }
+            int position = size == bestIds.length ? size - 1 : size++;
+            while (position > 0 && isBetter(score, otherId, bestScores[position - 1], bestIds[position - 1])) {
+                bestIds[position] = bestIds[position - 1];
+                bestScores[position] = bestScores[position - 1];
+                position--;
+            }
+            bestIds[position] = otherId;
+            bestScores[position] = score;
+        }
+        return bestIds;
+    }
+
+    // выше сходство — выше; при равенстве выше фильм с меньшим ID
+    private static boolean isBetter(float score, int filmId, float otherScore, int otherFilmId) {
+        return score > otherScore || (score == otherScore && filmId < otherFilmId);
+    }
+
+    private static class Scratch {
+
+        private int[] counts = new int[1024];
+        private int[] touched = new int[1024];
+
+        // расширить массивы под ID фильма и под еще один затронутый фильм
+        private void ensureCapacity(int filmId, int touchedSize) {
+            if (filmId >= counts.length) {
+                counts = Arrays.copyOf(counts, Math.max(filmId + 1, counts.length * 2));
+            }
+            if (touchedSize == touched.length) {
+                touched = Arrays.copyOf(touched, touched.length * 2);
+            }
+        }
+    }
+
+    private class BuildTask extends RecursiveAction {
+
+        private final int[] filmIds;
+        private final int from;
+        private final int to;
+        private final Map<Integer, int[]> built;
+        // рабочие массивы, общие для задач одного пересчета и освобождаемые вместе с ним
+        private final Queue<Scratch> scratches;
+
+        private BuildTask(int[] filmIds, int from, int to, Map<Integer, int[]> built, Queue<Scratch> scratches) {
+            this.filmIds = filmIds;
+            this.from = from;
+            this.to = to;
+            this.built = built;
+            this.scratches = scratches;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BUILD_THRESHOLD) {
+                final Scratch polled = scratches.poll();
+                final Scratch work = polled == null ? new Scratch() : polled;
+                for (int i = from; i < to; i++) {
+                    int[] row = computeRow(filmIds[i], work);
+                    if (row != null) {
+                        built.put(filmIds[i], row);
+                    }
+                }
+                scratches.offer(work);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new BuildTask(filmIds, from, middle, built, scratches),
+                    new BuildTask(filmIds, middle, to, built, scratches));
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Arrays;
+import java.util.Comparator;
+
+// граф дружбы в памяти: друзья каждого пользователя хранятся отсортированным массивом int,
+// поэтому общих друзей можно найти слиянием массивов без запросов к базе
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FriendGraph {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final AdjacencyMap friends = new AdjacencyMap();
+
+    // обратные связи: у кого пользователь в друзьях
+    private final AdjacencyMap followers = new AdjacencyMap();
+
+    // построить граф по таблице FRIENDS
+    @PostConstruct
+    public void rebuild() {
+        friends.load(jdbcTemplate, "select USER_ID, FRIEND_ID from FRIENDS order by USER_ID, FRIEND_ID");
+        followers.load(jdbcTemplate, "select FRIEND_ID, USER_ID from FRIENDS order by FRIEND_ID, USER_ID");
+        log.info("Friend graph built: {} users with friends", friends.size());
+    }
+
+    // добавить друга пользователю
+    public void addFriend(int userId, int friendId) {
+        friends.add(userId, friendId);
+        followers.add(friendId, userId);
+    }
+
+    // удалить друга у пользователя
+    public void removeFriend(int userId, int friendId) {
+        friends.remove(userId, friendId);
+        followers.remove(friendId, userId);
+    }
+
+    // получить отсортированные ID друзей пользователя; массив нельзя изменять
+    public int[] getFriends(int userId) {
+        return friends.get(userId);
+    }
+
+    // получить отсортированные ID пользователей, у которых этот пользователь в друзьях; массив нельзя изменять
+    public int[] getFollowers(int userId) {
+        return followers.get(userId);
+    }
+
+    // получить отсортированные ID общих друзей двух пользователей
+    public int[] getCommonFriends(int userId, int otherUserId) {
+        return getCommonFriends(new int[]{userId, otherUserId});
+    }
+
+    // получить отсортированные ID общих друзей нескольких пользователей
+    public int[] getCommonFriends(int[] userIds) {
+        final int[][] sets = getSortedBySize(userIds);
+        final int[] common = new int[sets[0].length];
+        final int size = intersect(sets, common);
+        return Arrays.copyOf(common, size);
+    }
+
+    // посчитать общих друзей нескольких пользователей, не собирая их список
+    public int countCommonFriends(int[] userIds) {
+        return intersect(getSortedBySize(userIds), null);
+    }
+
+    // ---------------------------------------------
+    // ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ
+    // ---------------------------------------------
+
+    // получить списки друзей пользователей, начиная с самого короткого
+    private int[][] getSortedBySize(int[] userIds) {
+        final int[][] sets = new int[userIds.length][];
+        for (int i = 0; i < userIds.length; i++) {
+            sets[i] = getFriends(userIds[i]);
+        }
+        Arrays.sort(sets, Comparator.comparingInt(set -> set.length));
+        return sets;
+    }
+
+    // пересечь отсортированные массивы, первый из которых самый короткий: каждый его элемент
+    // ищется в остальных экспоненциальным поиском от прошлой позиции, так что длинные списки
+    // не просматриваются целиком. Найденные ID пишутся в result, если он передан
+    private static int intersect(int[][] sets, int[] result) {
+        final int[] smallest = sets[0];
+        final int[] positions = new int[sets.length];
+        int size = 0;
+        candidates:
+        for (int candidate : smallest) {
+            for (int k = 1; k < sets.length; k++) {
+                int position = gallop(sets[k], positions[k], candidate);
+                if (position == sets[k].length) {
+                    break candidates;
+                }
+                positions[k] = position;
+                if (sets[k][position] != candidate) {
+                    continue candidates;
+                }
+            }
+            if (result != null) {
+                result[size] = candidate;
+            }
+            size++;
+        }
+        return size;
+    }
+
+    // найти первую позицию не меньше key, начиная с from
+    private static int gallop(int[] ids, int from, int key) {
+        int step = 1;
+        int low = from;
+        int high = from;
+        while (high < ids.length && ids[high] < key) {
+            low = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        high = Math.min(high, ids.length);
+        final int position = Arrays.binarySearch(ids, low, high, key);
+        return position >= 0 ? position : -position - 1;
+    }
+}
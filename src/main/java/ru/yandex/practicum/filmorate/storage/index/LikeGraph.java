@@ -0,0 +1,60 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+// лайки в памяти в обе стороны: кто лайкнул фильм и какие фильмы лайкнул пользователь
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LikeGraph {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final AdjacencyMap filmLikers = new AdjacencyMap();
+    private final AdjacencyMap userLikes = new AdjacencyMap();
+
+    // построить по таблице FILM_LIKE
+    @PostConstruct
+    public void rebuild() {
+        filmLikers.load(jdbcTemplate, "select FILM_ID, USER_ID from FILM_LIKE order by FILM_ID, USER_ID");
+        userLikes.load(jdbcTemplate, "select USER_ID, FILM_ID from FILM_LIKE order by USER_ID, FILM_ID");
+        log.info("Like graph built: {} films, {} users", filmLikers.size(), userLikes.size());
+    }
+
+    // учесть лайк
+    public void addLike(int filmId, int userId) {
+        filmLikers.add(filmId, userId);
+        userLikes.add(userId, filmId);
+    }
+
+    // учесть удаление лайка
+    public void removeLike(int filmId, int userId) {
+        filmLikers.remove(filmId, userId);
+        userLikes.remove(userId, filmId);
+    }
+
+    // получить отсортированные ID пользователей, лайкнувших фильм; массив нельзя изменять
+    public int[] getLikers(int filmId) {
+        return filmLikers.get(filmId);
+    }
+
+    // получить отсортированные ID фильмов, которые лайкнул пользователь; массив нельзя изменять
+    public int[] getLikedFilms(int userId) {
+        return userLikes.get(userId);
+    }
+
+    // получить отсортированные ID фильмов, у которых есть лайки
+    public int[] getLikedFilmIds() {
+        return filmLikers.keys();
+    }
+
+    // получить отсортированные ID пользователей, у которых есть лайки
+    public int[] getLikingUserIds() {
+        return userLikes.keys();
+    }
+}
@@ -0,0 +1,225 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+// пользователи с похожими вкусами: сходство Жаккара по множествам лайкнутых фильмов.
+// Для каждого пользователя хранится MinHash-подпись, подпись режется на полосы (LSH),
+// и кандидатами считаются пользователи, совпавшие хотя бы в одной полосе;
+// лучшие кандидаты пересчитываются точно. Корзина ограничена max-bucket-size пользователями:
+// заполненная корзина (например, общий популярный фильм) почти ничего не говорит о сходстве,
+// поэтому при поиске она пропускается, а новые пользователи в нее не добавляются
+@Component
+@Slf4j
+public class UserSimilarityIndex {
+
+    private final LikeGraph likeGraph;
+    private final int bands;
+    private final int rows;
+    private final int maxCandidates;
+    private final int maxRescored;
+    private final int maxBucketSize;
+
+    // по одному зерну на каждую хеш-функцию подписи
+    private final long[] seeds;
+
+    private final Map<Integer, int[]> signatures = new ConcurrentHashMap<>();
+
+    // корзины LSH: ключ — хеш номера полосы и ее значений, значение — ID пользователей
+    private final AdjacencyMap buckets = new AdjacencyMap();
+
+    public UserSimilarityIndex(LikeGraph likeGraph,
+                               @Value("${filmorate.similar.users.bands:32}") int bands,
+                               @Value("${filmorate.similar.users.rows:2}") int rows,
+                               @Value("${filmorate.similar.users.max-candidates:2000}") int maxCandidates,
+                               @Value("${filmorate.similar.users.max-rescored:200}") int maxRescored,
+                               @Value("${filmorate.similar.users.max-bucket-size:1000}") int maxBucketSize) {
+        this.likeGraph = likeGraph;
+        this.bands = bands;
+        this.rows = rows;
+        this.maxCandidates = maxCandidates;
+        this.maxRescored = maxRescored;
+        this.maxBucketSize = maxBucketSize;
+        final SplittableRandom random = new SplittableRandom(bands * 31L + rows);
+        this.seeds = random.longs(bands * rows).toArray();
+    }
+
+    // посчитать подписи и корзины для всех пользователей с лайками
+    @PostConstruct
+    public void rebuild() {
+        final int[] userIds = likeGraph.getLikingUserIds();
+        final int[][] built = new int[userIds.length][];
+        IntStream.range(0, userIds.length).parallel()
+                .forEach(i -> built[i] = computeSignature(likeGraph.getLikedFilms(userIds[i])));
+
+        // пользователи обходятся по возрастанию ID, поэтому списки корзин выходят отсортированными
+        final Map<Integer, int[]> bucketLists = new HashMap<>();
+        final Map<Integer, Integer> bucketSizes = new HashMap<>();
+        for (int[] signature : built) {
+            for (int band = 0; band < bands; band++) {
+                bucketSizes.merge(bucketKey(signature, band), 1, Integer::sum);
+            }
+        }
+        bucketSizes.forEach((key, size) -> bucketLists.put(key, new int[Math.min(size, maxBucketSize)]));
+        final Map<Integer, Integer> filled = new HashMap<>();
+        for (int i = 0; i < userIds.length; i++) {
+            for (int band = 0; band < bands; band++) {
+                int key = bucketKey(built[i], band);
+                int[] bucket = bucketLists.get(key);
+                int position = filled.getOrDefault(key, 0);
+                if (position < bucket.length) {
+                    bucket[position] = userIds[i];
+                    filled.put(key, position + 1);
+                }
+            }
+        }
+
+        signatures.clear();
+        for (int i = 0; i < userIds.length; i++) {
+            signatures.put(userIds[i], built[i]);
+        }
+        buckets.replaceAll(bucketLists);
+        log.info("User similarity index built: {} users, {} buckets", userIds.length, bucketLists.size());
+    }
+
+    // учесть изменение лайков пользователя; вызывается после обновления LikeGraph
+    public void onLikesChanged(int userId) {
+        signatures.compute(userId, (id, current) -> {
+            final int[] likedFilms = likeGraph.getLikedFilms(userId);
+            final int[] updated = likedFilms.length == 0 ? null : computeSignature(likedFilms);
+            for (int band = 0; band < bands; band++) {
+                int oldKey = current == null ? 0 : bucketKey(current, band);
+                int newKey = updated == null ? 0 : bucketKey(updated, band);
+                if (current != null && (updated == null || oldKey != newKey)) {
+                    buckets.remove(oldKey, userId);
+                }
+                if (updated != null && (current == null || oldKey != newKey)) {
+                    buckets.add(newKey, userId, maxBucketSize);
+                }
+            }
+            return updated;
+        });
+    }
+
+    // найти пользователей с самым похожим набором лайков
+    public List<Match> getSimilar(int userId, int count) {
+        final int[] signature = signatures.get(userId);
+        if (signature == null) {
+            return new ArrayList<>();
+        }
+
+        // кандидаты, чаще совпадающие по полосам, скорее всего ближе по Жаккару;
+        // обход корзин прекращается, как только набрано maxCandidates кандидатов
+        final Map<Integer, Integer> bandHits = new HashMap<>();
+        for (int band = 0; band < bands && bandHits.size() < maxCandidates; band++) {
+            final int[] bucket = buckets.get(bucketKey(signature, band));
+            if (bucket.length >= maxBucketSize) {
+                continue;
+            }
+            for (int i = 0; i < bucket.length && bandHits.size() < maxCandidates; i++) {
+                if (bucket[i] != userId) {
+                    bandHits.merge(bucket[i], 1, Integer::sum);
+                }
+            }
+        }
+        final List<Map.Entry<Integer, Integer>> candidates = new ArrayList<>(bandHits.entrySet());
+        candidates.sort(Map.Entry.<Integer, Integer>comparingByValue().reversed()
+                .thenComparing(Map.Entry.comparingByKey()));
+
+        final int[] likedFilms = likeGraph.getLikedFilms(userId);
+        final List<Match> matches = new ArrayList<>();
+        for (int i = 0; i < Math.min(candidates.size(), maxRescored); i++) {
+            int candidate = candidates.get(i).getKey();
+            double similarity = jaccard(likedFilms, likeGraph.getLikedFilms(candidate));
+            if (similarity > 0) {
+                matches.add(new Match(candidate, similarity));
+            }
+        }
+        matches.sort(Comparator.comparingDouble(Match::getSimilarity).reversed()
+                .thenComparingInt(Match::getUserId));
+        return matches.subList(0, Math.min(count, matches.size()));
+    }
+
+    // посчитать сходство Жаккара двух отсортированных множеств
+    public static double jaccard(int[] first, int[] second) {
+        int common = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                common++;
+                i++;
+                j++;
+            }
+        }
+        final int union = first.length + second.length - common;
+        return union == 0 ? 0 : (double) common / union;
+    }
+
+    // ---------------------------------------------
+    // ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ
+    // ---------------------------------------------
+
+    // MinHash-подпись: для каждой хеш-функции — минимальный хеш среди лайкнутых фильмов
+    private int[] computeSignature(int[] likedFilms) {
+        final int[] signature = new int[seeds.length];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (int filmId : likedFilms) {
+            for (int i = 0; i < seeds.length; i++) {
+                int hash = hash(filmId, seeds[i]);
+                if (hash < signature[i]) {
+                    signature[i] = hash;
+                }
+            }
+        }
+        return signature;
+    }
+
+    // ключ корзины для полосы подписи
+    private int bucketKey(int[] signature, int band) {
+        long key = band;
+        for (int i = band * rows; i < (band + 1) * rows; i++) {
+            key = key * 0x9E3779B97F4A7C15L + signature[i];
+        }
+        return (int) mix(key);
+    }
+
+    private static int hash(int filmId, long seed) {
+        return (int) mix(filmId * 0x9E3779B97F4A7C15L + seed);
+    }
+
+    // перемешивание битов из MurmurHash3
+    private static long mix(long value) {
+        value = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+        value = (value ^ (value >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return value ^ (value >>> 33);
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Match {
+
+        private final int userId;
+
+        private final double similarity;
+
+    }
+}
@@ -20,4 +20,9 @@ merge into GENRES(GENRE_ID, GENRE)
 merge into GENRES(GENRE_ID, GENRE)
     values (5, 'Документальный');
 merge into GENRES(GENRE_ID, GENRE)
-    values (6, 'Боевик');
\ No newline at end of file
+    values (6, 'Боевик');
+
+merge into ID_BLOCK_LOCKS(SEQUENCE_NAME)
+    values ('FILM_ID_BLOCKS');
+merge into ID_BLOCK_LOCKS(SEQUENCE_NAME)
+    values ('USER_ID_BLOCKS');
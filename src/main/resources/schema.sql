@@ -72,4 +72,15 @@ create table IF NOT EXISTS FRIENDS
         foreign key (USER_ID) references USERS,
     constraint FRIENDS_USERS_USER_ID_FK_2
         foreign key (FRIEND_ID) references USERS
+);
+
+create sequence IF NOT EXISTS FILM_ID_BLOCKS start with 0 minvalue 0;
+
+create sequence IF NOT EXISTS USER_ID_BLOCKS start with 0 minvalue 0;
+
+create table IF NOT EXISTS ID_BLOCK_LOCKS
+(
+    SEQUENCE_NAME CHARACTER VARYING(30) not null,
+    constraint ID_BLOCK_LOCKS_PK
+        primary key (SEQUENCE_NAME)
 );
\ No newline at end of file
@@ -0,0 +1,157 @@
+package ru.yandex.practicum.filmorate.config;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.web.servlet.HandlerMapping;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.cache.EntityVersions;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class ConditionalGetInterceptorTest {
+
+    private final ConditionalGetInterceptor interceptor;
+    private final FilmService filmService;
+    private final UserService userService;
+    private final EntityVersions versions;
+
+    // фильм не изменился — 304 без обращения к контроллеру; после лайка — новый ETag
+    @Test
+    void filmNotModifiedUntilLike() {
+        filmService.add(createFilm());
+        userService.add(createUser());
+
+        String eTag = requestETag(ConditionalGetInterceptor.FILM_PATTERN, "1", null);
+        assertNotNull(eTag, "Ожидался ETag в ответе");
+        assertNotModified(ConditionalGetInterceptor.FILM_PATTERN, "1", eTag);
+
+        filmService.addLike(1, 1);
+        String newETag = requestETag(ConditionalGetInterceptor.FILM_PATTERN, "1", eTag);
+        assertNotEquals(eTag, newETag, "После лайка ETag должен измениться");
+        assertNotModified(ConditionalGetInterceptor.FILM_PATTERN, "1", newETag);
+    }
+
+    // пользователь не изменился — 304; после добавления друга — новый ETag
+    @Test
+    void userNotModifiedUntilFriendChange() {
+        userService.add(createUser());
+        userService.add(createUser());
+
+        String eTag = requestETag(ConditionalGetInterceptor.USER_PATTERN, "1", null);
+        assertNotModified(ConditionalGetInterceptor.USER_PATTERN, "1", eTag);
+        assertNotEquals(eTag, requestETag(ConditionalGetInterceptor.USER_PATTERN, "2", null),
+                "У разных пользователей должны быть разные ETag");
+
+        userService.addFriend(1, 2);
+        assertNotEquals(eTag, requestETag(ConditionalGetInterceptor.USER_PATTERN, "1", eTag),
+                "После добавления друга ETag должен измениться");
+    }
+
+    // список популярных фильмов меняется при добавлении фильма
+    @Test
+    void popularChangesOnNewFilm() {
+        String eTag = requestETag(ConditionalGetInterceptor.POPULAR_PATTERN, null, null);
+        assertNotModified(ConditionalGetInterceptor.POPULAR_PATTERN, null, eTag);
+
+        filmService.add(createFilm());
+        assertNotEquals(eTag, requestETag(ConditionalGetInterceptor.POPULAR_PATTERN, null, eTag),
+                "После добавления фильма ETag должен измениться");
+    }
+
+    // запросы кроме GET и некорректные ID передаются контроллеру без ETag
+    @Test
+    void skipUnsupportedRequests() {
+        MockHttpServletRequest put = createRequest(ConditionalGetInterceptor.FILM_PATTERN, "1", null);
+        put.setMethod("PUT");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertTrue(interceptor.preHandle(put, response, new Object()), "Запрос PUT должен передаваться дальше");
+        assertNull(response.getHeader(HttpHeaders.ETAG), "Для PUT не нужен ETag");
+
+        assertNull(requestETag(ConditionalGetInterceptor.FILM_PATTERN, "abc", null),
+                "Для некорректного ID не нужен ETag");
+    }
+
+    // выключенные условные запросы всегда передаются контроллеру без ETag
+    @Test
+    void skipWhenDisabled() {
+        filmService.add(createFilm());
+        ConditionalGetInterceptor disabled = new ConditionalGetInterceptor(versions, false);
+        String eTag = requestETag(ConditionalGetInterceptor.FILM_PATTERN, "1", null);
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertTrue(disabled.preHandle(createRequest(ConditionalGetInterceptor.FILM_PATTERN, "1", eTag),
+                response, new Object()), "Запрос должен передаваться контроллеру");
+        assertNull(response.getHeader(HttpHeaders.ETAG), "Ожидался ответ без ETag");
+    }
+
+    // ---------------------------------------------
+    //  ШАБЛОНЫ
+    // ---------------------------------------------
+
+    private String requestETag(String pattern, String id, String ifNoneMatch) {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertTrue(interceptor.preHandle(createRequest(pattern, id, ifNoneMatch), response, new Object()),
+                "Запрос должен передаваться контроллеру");
+        return response.getHeader(HttpHeaders.ETAG);
+    }
+
+    private void assertNotModified(String pattern, String id, String eTag) {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertFalse(interceptor.preHandle(createRequest(pattern, id, eTag), response, new Object()),
+                "Запрос не должен передаваться контроллеру");
+        assertEquals(HttpStatus.NOT_MODIFIED.value(), response.getStatus(), "Ожидался ответ 304");
+    }
+
+    private MockHttpServletRequest createRequest(String pattern, String id, String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET",
+                id == null ? pattern : pattern.replace("{id}", id));
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, pattern);
+        if (id != null) {
+            request.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, Map.of("id", id));
+        }
+        if (ifNoneMatch != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return request;
+    }
+
+    private Film createFilm() {
+        Film film = new Film();
+        film.setName("Movie");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        return film;
+    }
+
+    private User createUser() {
+        User user = new User();
+        user.setEmail("user@example.com");
+        user.setLogin("user");
+        user.setName("user");
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return user;
+    }
+}
@@ -6,9 +6,12 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.test.annotation.DirtiesContext;
 import ru.yandex.practicum.filmorate.exception.EntityNotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Page;
 
 import javax.validation.ConstraintViolation;
 import javax.validation.Validation;
@@ -16,16 +19,25 @@ import javax.validation.Validator;
 import javax.validation.ValidatorFactory;
 import javax.validation.ValidationException;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.Month;
 import java.util.List;
 import java.util.Set;
+import java.util.zip.GZIPInputStream;
 
 import org.apache.commons.lang.RandomStringUtils;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 @SpringBootTest
 @AutoConfigureTestDatabase
@@ -377,4 +389,94 @@ class FilmControllerTest {
         assertEquals(updatedFilm, savedFilm2, "Фильмы не совпадают");
     }
 
+    // ---------------------------------------------
+    // GET /films?limit=&after=
+    // ---------------------------------------------
+
+    // PASS: получить фильмы постранично
+    @Test
+    void getFilmsPageByPage() {
+        filmController.add(createFilm());
+        filmController.add(createFilm());
+        filmController.add(createFilm());
+
+        final Page<Film> firstPage = filmController.getPage(2, null);
+        final Page<Film> secondPage = filmController.getPage(2, firstPage.getNextCursor());
+
+        assertEquals(2, firstPage.getItems().size(), "Неверный размер первой страницы");
+        assertNotNull(firstPage.getNextCursor(), "Ожидался курсор следующей страницы");
+        assertEquals(1, secondPage.getItems().size(), "Неверный размер второй страницы");
+        assertEquals(3, secondPage.getItems().get(0).getId(), "Неверный фильм на второй странице");
+        assertNull(secondPage.getNextCursor(), "Вторая страница должна быть последней");
+    }
+
+    // FAIL: некорректный курсор
+    @Test
+    void shouldFailToGetPageWithInvalidCursor() {
+        filmController.add(createFilm());
+
+        final ValidationException exception = assertThrows(
+                ValidationException.class,
+                () -> filmController.getPage(2, "not-a-cursor")
+        );
+        assertEquals("Некорректный курсор", exception.getMessage(), "Ожидалось другое сообщение об ошибке");
+    }
+
+    // ---------------------------------------------
+    // GET /films/export
+    // ---------------------------------------------
+
+    // PASS: выгрузить все фильмы построчно в формате NDJSON
+    @Test
+    void exportFilmsAsNdjson() throws IOException {
+        filmController.add(createFilm());
+        filmController.add(createFilm());
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        filmController.export().getBody().writeTo(out);
+        final String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+
+        assertEquals(2, lines.length, "Неверное количество строк");
+        assertTrue(lines[0].startsWith("{\"id\":1,"), "Ожидался первый фильм");
+        assertTrue(lines[1].startsWith("{\"id\":2,"), "Ожидался второй фильм");
+    }
+
+    // ---------------------------------------------
+    // GET /films/popular
+    // ---------------------------------------------
+
+    // PASS: получить популярные фильмы готовым JSON с ETag
+    @Test
+    void getTopFilmsAsJson() {
+        filmController.add(createFilm());
+        filmController.add(createFilm());
+
+        final ResponseEntity<byte[]> response = filmController.getTopFilms(1, null);
+        final String json = new String(response.getBody(), StandardCharsets.UTF_8);
+
+        assertTrue(json.startsWith("[{\"id\":1,") && !json.contains("\"id\":2"), "Ожидался один фильм");
+        assertNotNull(response.getHeaders().getETag(), "Ожидался ETag");
+        assertNull(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING), "Ответ не должен быть сжат");
+    }
+
+    // PASS: получить популярные фильмы в сжатом виде, если клиент принимает gzip
+    @Test
+    void getTopFilmsAsGzip() throws IOException {
+        filmController.add(createFilm());
+
+        final ResponseEntity<byte[]> plain = filmController.getTopFilms(10, null);
+        final ResponseEntity<byte[]> compressed = filmController.getTopFilms(10, "gzip, deflate");
+
+        assertEquals("gzip", compressed.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING), "Ожидался сжатый ответ");
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed.getBody()))) {
+            assertArrayEquals(plain.getBody(), in.readAllBytes(), "Сжатый ответ не совпадает с исходным");
+        }
+    }
+
+    // FAIL: параметр count должен быть положительным
+    @Test
+    void getTopFilmsWithInvalidCount() {
+        assertThrows(ValidationException.class, () -> filmController.getTopFilms(0, null),
+                "Ожидалась ошибка валидации");
+    }
 }
@@ -9,7 +9,12 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.annotation.DirtiesContext;
 import ru.yandex.practicum.filmorate.exception.EntityNotFoundException;
+import ru.yandex.practicum.filmorate.model.FriendMutation;
+import ru.yandex.practicum.filmorate.model.MutationAction;
+import ru.yandex.practicum.filmorate.model.MutationResult;
+import ru.yandex.practicum.filmorate.model.MutationStatus;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserPatch;
 
 import javax.validation.ConstraintViolation;
 import javax.validation.Validation;
@@ -21,6 +26,7 @@ import java.time.LocalDate;
 import java.time.Month;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -358,4 +364,101 @@ class UserControllerTest {
         assertEquals(updatedUser, savedUser2, "Объекты должны совпадать");
     }
 
+    // ---------------------------------------------
+    // PATCH /users/{id}
+    // ---------------------------------------------
+
+    // PASS: частичное обновление меняет только переданные поля
+    @Test
+    void patchUserEmail() {
+        final User addedUser = userController.add(createUser());
+        final UserPatch patch = new UserPatch();
+        patch.setEmail("pixel@example.com");
+
+        final User patchedUser = userController.patch(addedUser.getId(), patch);
+
+        assertEquals("pixel@example.com", patchedUser.getEmail(), "Адрес почты не обновлен");
+        assertEquals(addedUser.getLogin(), patchedUser.getLogin(), "Логин не должен меняться");
+        assertEquals(addedUser.getName(), patchedUser.getName(), "Имя не должно меняться");
+        assertEquals(addedUser.getBirthday(), patchedUser.getBirthday(), "День рождения не должен меняться");
+        assertEquals(patchedUser, userController.get(addedUser.getId()), "Объекты должны совпадать");
+    }
+
+    // PASS: пустое имя при частичном обновлении заменяется логином
+    @Test
+    void patchUserWithBlankNameUsesLogin() {
+        final User addedUser = userController.add(createUser());
+        final UserPatch patch = new UserPatch();
+        patch.setName(" ");
+
+        final User patchedUser = userController.patch(addedUser.getId(), patch);
+
+        assertEquals(addedUser.getLogin(), patchedUser.getName(), "Имя должно совпадать с логином");
+    }
+
+    // FAIL: частичное обновление с логином из пробелов
+    @Test
+    void shouldFailToPatchUserWithWhitespaceInLogin() {
+        final User addedUser = userController.add(createUser());
+        final UserPatch patch = new UserPatch();
+        patch.setLogin("pxl 2000");
+
+        assertThrows(ValidationException.class, () -> userController.patch(addedUser.getId(), patch),
+                "Логин с пробелами должен отклоняться");
+        assertEquals(addedUser.getLogin(), userController.get(addedUser.getId()).getLogin(),
+                "Логин не должен меняться");
+    }
+
+    // FAIL: частичное обновление несуществующего пользователя
+    @Test
+    void shouldFailToPatchUnknownUser() {
+        final UserPatch patch = new UserPatch();
+        patch.setEmail("pixel@example.com");
+
+        final EntityNotFoundException exception = assertThrows(
+                EntityNotFoundException.class,
+                () -> userController.patch(1000, patch)
+        );
+        assertEquals("Не найден пользователь с id 1000", exception.getMessage(),
+                "Ожидалось другое сообщение об ошибке");
+    }
+
+    // ---------------------------------------------
+    // POST /users/friends
+    // ---------------------------------------------
+
+    // PASS: применить пакет операций с друзьями, результат по каждой операции
+    @Test
+    void applyFriendsInBulk() {
+        userController.add(createUser());
+        final User anotherUser = createUser();
+        anotherUser.setEmail("byte@example.com");
+        anotherUser.setLogin("byte2000");
+        userController.add(anotherUser);
+
+        final List<MutationResult> results = userController.applyFriends(List.of(
+                new FriendMutation(1, 2, MutationAction.ADD),
+                new FriendMutation(1, 2, MutationAction.ADD),
+                new FriendMutation(2, 1, MutationAction.ADD),
+                new FriendMutation(2, 1, MutationAction.REMOVE),
+                new FriendMutation(1, 1, MutationAction.ADD),
+                new FriendMutation(1, 99, MutationAction.ADD)));
+
+        assertEquals(List.of(MutationStatus.APPLIED, MutationStatus.UNCHANGED, MutationStatus.APPLIED,
+                        MutationStatus.APPLIED, MutationStatus.FAILED, MutationStatus.FAILED),
+                results.stream().map(MutationResult::getStatus).collect(Collectors.toList()),
+                "Неверные результаты операций");
+        assertEquals("Не найден пользователь с id 99", results.get(5).getError(),
+                "Ожидалось другое сообщение об ошибке");
+        assertEquals(Set.of(2), userController.get(1).getFriends(), "Неверный список друзей");
+        assertEquals(Set.of(), userController.get(2).getFriends(), "Неверный список друзей");
+    }
+
+    // FAIL: пустой пакет операций
+    @Test
+    void shouldFailToApplyEmptyFriendsBatch() {
+        assertThrows(ValidationException.class, () -> userController.applyFriends(List.of()),
+                "Пустой пакет должен отклоняться");
+    }
+
 }
\ No newline at end of file
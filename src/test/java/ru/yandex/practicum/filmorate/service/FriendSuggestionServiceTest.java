@@ -0,0 +1,121 @@
+package ru.yandex.practicum.filmorate.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.model.FriendSuggestion;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.storage.index.FriendGraph;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class FriendSuggestionServiceTest {
+
+    private final UserService userService;
+    private final UserStorage userStorage;
+    private final FriendGraph friendGraph;
+    private final FriendSuggestionService suggestionService;
+
+    // друзья друзей по убыванию числа общих друзей, без самого пользователя и его друзей
+    @Test
+    void suggestionsRankedByMutualFriends() {
+        addUsers(6);
+        userService.addFriend(1, 2);
+        userService.addFriend(1, 3);
+        userService.addFriend(2, 1);
+        userService.addFriend(2, 3);
+        userService.addFriend(2, 4);
+        userService.addFriend(2, 5);
+        userService.addFriend(3, 5);
+        userService.addFriend(3, 6);
+
+        List<FriendSuggestion> suggestions = userService.getSuggestions(1, 10);
+
+        assertEquals(List.of(5, 4, 6), getIds(suggestions), "Неверный порядок подсказок");
+        assertEquals(List.of(2, 1, 1), suggestions.stream()
+                        .map(FriendSuggestion::getMutualFriends).collect(Collectors.toList()),
+                "Неверное число общих друзей");
+        assertEquals(List.of(5), getIds(userService.getSuggestions(1, 1)), "Неверный размер выдачи");
+    }
+
+    // кеш сбрасывается, когда меняются друзья пользователя или его друзей
+    @Test
+    void suggestionsInvalidatedOnFriendChanges() {
+        addUsers(5);
+        userService.addFriend(1, 2);
+        userService.addFriend(2, 3);
+        assertEquals(List.of(3), getIds(userService.getSuggestions(1, 10)), "Неверные подсказки");
+
+        userService.addFriend(2, 4);
+        assertEquals(List.of(3, 4), getIds(userService.getSuggestions(1, 10)),
+                "Подсказки должны учитывать новых друзей друга");
+
+        userService.addFriend(1, 3);
+        assertEquals(List.of(4), getIds(userService.getSuggestions(1, 10)),
+                "Новый друг не должен попадать в подсказки");
+
+        userService.removeFriend(1, 2);
+        assertEquals(List.of(), getIds(userService.getSuggestions(1, 10)),
+                "Подсказки должны учитывать удаление друга");
+    }
+
+    // повторный запрос отдается из кеша
+    @Test
+    void suggestionsServedFromCache() {
+        addUsers(3);
+        userService.addFriend(1, 2);
+        userService.addFriend(2, 3);
+
+        userService.getSuggestions(1, 10);
+        userService.getSuggestions(1, 10);
+
+        assertEquals(1, suggestionService.getStats().missCount(), "Подсказки должны считаться один раз");
+        assertEquals(1, suggestionService.getStats().hitCount(), "Повторный запрос должен попасть в кеш");
+    }
+
+    // обход ограничен числом друзей и кандидатов
+    @Test
+    void suggestionsWithBoundedTraversal() {
+        addUsers(6);
+        friendGraph.addFriend(1, 2);
+        friendGraph.addFriend(1, 3);
+        friendGraph.addFriend(2, 4);
+        friendGraph.addFriend(2, 5);
+        friendGraph.addFriend(3, 6);
+        FriendSuggestionService boundedService = new FriendSuggestionService(friendGraph, userStorage,
+                new SimpleMeterRegistry(), 1, 10, 10);
+
+        assertEquals(List.of(4), getIds(boundedService.getSuggestions(1, 10)),
+                "Должен обходиться только первый друг и первый его друг");
+    }
+
+    // ---------------------------------------------
+    //  ШАБЛОНЫ
+    // ---------------------------------------------
+
+    private void addUsers(int count) {
+        for (int i = 1; i <= count; i++) {
+            User user = new User();
+            user.setEmail("user" + i + "@example.com");
+            user.setLogin("user" + i);
+            user.setName("user" + i);
+            userService.add(user);
+        }
+    }
+
+    private List<Integer> getIds(List<FriendSuggestion> suggestions) {
+        return suggestions.stream().map(suggestion -> suggestion.getUser().getId()).collect(Collectors.toList());
+    }
+}
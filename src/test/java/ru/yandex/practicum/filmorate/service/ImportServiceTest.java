@@ -0,0 +1,113 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.ImportReport;
+import ru.yandex.practicum.filmorate.storage.impl.FilmDbStorage;
+
+import javax.validation.Validation;
+import javax.validation.ValidationException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class ImportServiceTest {
+
+    private final FilmService filmService;
+    private final ValidationService validationService;
+    private final ObjectMapper objectMapper;
+    private final FilmDbStorage filmStorage;
+
+    // загрузить JSON-массив пачками; некорректные фильмы попадают в отчет
+    @Test
+    void importJsonArray() throws IOException {
+        ImportReport report = createImportService().importFilms(toStream("[" +
+                "{\"name\": \"Movie\", \"duration\": 100, \"mpa\": {\"id\": 1}, \"genres\": [{\"id\": 1}, {\"id\": 2}]}," +
+                "{\"name\": \"\", \"duration\": 100}," +
+                "{\"name\": \"Motion Picture\", \"releaseDate\": \"1800-01-01\"}," +
+                "{\"name\": \"Video\", \"genres\": [{\"id\": 99}]}," +
+                "{\"name\": \"Picture\", \"duration\": \"long\"}," +
+                "{\"name\": \"Film\"}," +
+                "{\"name\": \"Cinema\", \"mpa\": {\"id\": 2}}" +
+                "]"));
+        List<Film> films = filmStorage.getAll();
+
+        assertEquals(3, report.getImported(), "Неверное число загруженных фильмов");
+        assertEquals(4, report.getFailed(), "Неверное число отклоненных фильмов");
+        assertEquals(List.of(1, 2, 3, 4), List.of(report.getErrors().get(0).getIndex(),
+                        report.getErrors().get(1).getIndex(), report.getErrors().get(2).getIndex(),
+                        report.getErrors().get(3).getIndex()),
+                "Неверные номера отклоненных фильмов");
+        assertEquals("Нет жанра с id=99", report.getErrors().get(2).getError(),
+                "Ожидалось другое сообщение об ошибке");
+        assertEquals(3, films.size(), "Неверное число фильмов в базе");
+        assertEquals("Movie", films.get(0).getName(), "Неверное название фильма");
+        assertEquals(2, films.get(0).getGenres().size(), "Неверное число жанров");
+        assertEquals(1, films.get(0).getMpa().getId(), "Неверный рейтинг");
+        assertEquals("Cinema", films.get(2).getName(), "Неверное название фильма");
+    }
+
+    // загрузить NDJSON
+    @Test
+    void importNdjson() throws IOException {
+        ImportReport report = createImportService().importFilms(toStream(
+                "{\"name\": \"Movie\", \"duration\": 100}\n" +
+                "{\"name\": \"Motion Picture\", \"genres\": [{\"id\": 3}]}\n" +
+                "{\"name\": \"Video\"}\n"));
+        Film film = filmService.add(createFilm());
+
+        assertEquals(3, report.getImported(), "Неверное число загруженных фильмов");
+        assertEquals(0, report.getFailed(), "Ошибок быть не должно");
+        assertEquals(3, filmStorage.getAll().size() - 1, "Неверное число фильмов в базе");
+        assertEquals(4, film.getId(), "ID нового фильма должен идти после загруженных");
+    }
+
+    // некорректный JSON прерывает загрузку, записанные пачки остаются
+    @Test
+    void importMalformedJson() {
+        ImportService importService = createImportService();
+
+        ValidationException exception = assertThrows(ValidationException.class,
+                () -> importService.importFilms(toStream(
+                        "{\"name\": \"Movie\"}\n{\"name\": \"Video\"}\n{\"name\": \"Film\"\n")),
+                "Некорректный JSON должен прерывать загрузку");
+
+        assertEquals("Некорректный JSON в строке 4; загружено фильмов: 2", exception.getMessage(),
+                "Ожидалось другое сообщение об ошибке");
+        assertEquals(2, filmStorage.getAll().size(), "Неверное число фильмов в базе");
+    }
+
+    // ---------------------------------------------
+    //  ШАБЛОНЫ
+    // ---------------------------------------------
+
+    private ImportService createImportService() {
+        return new ImportService(filmService, validationService,
+                Validation.buildDefaultValidatorFactory().getValidator(), objectMapper, 2);
+    }
+
+    private InputStream toStream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Film createFilm() {
+        Film film = new Film();
+        film.setName("Picture");
+        return film;
+    }
+}
@@ -0,0 +1,140 @@
+package ru.yandex.practicum.filmorate.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.exception.TooManyRequestsException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeMutation;
+import ru.yandex.practicum.filmorate.model.MutationAction;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.impl.FilmLikeCounters;
+import ru.yandex.practicum.filmorate.storage.impl.UserDbStorage;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class LikeIngestionServiceTest {
+
+    private final FilmService filmService;
+    private final FilmDbStorage filmStorage;
+    private final UserDbStorage userStorage;
+    private final FilmLikeCounters likeCounters;
+
+    // лайки и отмены одной пары в одной выгрузке схлопываются в последнюю операцию
+    @Test
+    void drainCoalescesToggles() {
+        filmStorage.add(createFilm("Movie"));
+        userStorage.add(createUser("pxl"));
+        userStorage.add(createUser("byte"));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        LikeIngestionService ingestion = new LikeIngestionService(filmService, registry, true, 100, 0, 100);
+
+        ingestion.submit(1, 1, MutationAction.ADD);
+        ingestion.submit(1, 1, MutationAction.REMOVE);
+        ingestion.submit(1, 1, MutationAction.ADD);
+        ingestion.submit(1, 2, MutationAction.ADD);
+        ingestion.submit(1, 2, MutationAction.REMOVE);
+        assertEquals(5, ingestion.getQueueDepth(), "Неверная длина очереди");
+
+        ingestion.drain();
+        likeCounters.flush();
+
+        assertEquals(0, ingestion.getQueueDepth(), "Очередь должна быть пуста");
+        assertEquals(Set.of(1), filmStorage.get(1).getLikes(), "Неверный список лайков");
+        assertEquals(1, filmStorage.get(1).getTotalLikes(), "Неверное число лайков");
+        assertEquals(3, registry.counter("filmorate.likes.queue.coalesced").count(),
+                "Неверное число схлопнутых операций");
+    }
+
+    // операции с несуществующими фильмами и пользователями пропускаются
+    @Test
+    void drainSkipsUnknownIds() {
+        filmStorage.add(createFilm("Movie"));
+        userStorage.add(createUser("pxl"));
+        LikeIngestionService ingestion = new LikeIngestionService(filmService, new SimpleMeterRegistry(),
+                true, 100, 0, 100);
+
+        ingestion.submit(1, 1, MutationAction.ADD);
+        ingestion.submit(1, 99, MutationAction.ADD);
+        ingestion.submit(99, 1, MutationAction.ADD);
+        ingestion.drain();
+
+        assertEquals(Set.of(1), filmStorage.get(1).getLikes(), "Неверный список лайков");
+    }
+
+    // пакет не записался — операции записываются по одной, ошибочные учитываются в метрике
+    @Test
+    void drainFallsBackToSingleWrites() {
+        filmStorage.add(createFilm("Movie"));
+        userStorage.add(createUser("pxl"));
+        userStorage.add(createUser("byte"));
+        FilmService failingBatches = spy(filmService);
+        doAnswer(invocation -> {
+            List<LikeMutation> mutations = invocation.getArgument(0);
+            if (mutations.size() > 1 || mutations.get(0).getUserId() == 2) {
+                throw new DuplicateKeyException("Лайк уже добавлен");
+            }
+            return invocation.callRealMethod();
+        }).when(failingBatches).applyLikes(anyList());
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        LikeIngestionService ingestion = new LikeIngestionService(failingBatches, registry, true, 100, 0, 100);
+
+        ingestion.submit(1, 1, MutationAction.ADD);
+        ingestion.submit(1, 2, MutationAction.ADD);
+        ingestion.drain();
+
+        assertEquals(0, ingestion.getQueueDepth(), "Очередь должна быть пуста");
+        assertEquals(Set.of(1), filmStorage.get(1).getLikes(), "Операция без ошибки должна записаться");
+        assertEquals(1, registry.counter("filmorate.likes.queue.failed").count(),
+                "Неверное число потерянных операций");
+    }
+
+    // переполненная очередь отказывает в приеме
+    @Test
+    void submitToFullQueue() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        LikeIngestionService ingestion = new LikeIngestionService(filmService, registry, true, 1, 0, 100);
+
+        ingestion.submit(1, 1, MutationAction.ADD);
+
+        assertThrows(TooManyRequestsException.class, () -> ingestion.submit(1, 2, MutationAction.ADD),
+                "Переполненная очередь должна отказать");
+        assertEquals(1, registry.counter("filmorate.likes.queue.rejected").count(),
+                "Неверное число отказов");
+    }
+
+    // ---------------------------------------------
+    //  ШАБЛОНЫ
+    // ---------------------------------------------
+
+    private Film createFilm(String name) {
+        Film film = new Film();
+        film.setName(name);
+        return film;
+    }
+
+    private User createUser(String login) {
+        User user = new User();
+        user.setEmail(login + "@example.com");
+        user.setLogin(login);
+        user.setName(login);
+        return user;
+    }
+}
@@ -0,0 +1,94 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.cache.EntityVersions;
+import ru.yandex.practicum.filmorate.storage.cache.StaleServing;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class PopularFilmsCacheTest {
+
+    private final PopularFilmsCache popularFilmsCache;
+    private final FilmService filmService;
+    private final UserService userService;
+    private final EntityVersions versions;
+    private final ObjectMapper objectMapper;
+    private final StaleServing staleServing;
+
+    // ответ не пересобирается, пока список популярных фильмов не изменился
+    @Test
+    void reuseResponseWhileUnchanged() throws Exception {
+        addFilmsAndUser(2);
+        PopularFilmsCache.Response first = popularFilmsCache.get(10);
+        assertSame(first, popularFilmsCache.get(10), "Ожидался готовый ответ из кеша");
+        assertNotSame(first, popularFilmsCache.get(1), "Для другого count нужен свой ответ");
+        assertArrayEquals(objectMapper.writeValueAsBytes(filmService.getTopFilms(10)), first.getJson(),
+                "Готовый ответ не совпадает с сериализацией фильмов");
+    }
+
+    // после лайка ответ пересобирается, если интервал пересборки прошел
+    @Test
+    void rebuildAfterLike() throws Exception {
+        addFilmsAndUser(2);
+        PopularFilmsCache cache = createCache(0);
+        PopularFilmsCache.Response before = cache.get(10);
+        filmService.addLike(2, 1);
+
+        PopularFilmsCache.Response after = cache.get(10);
+        assertNotSame(before, after, "После лайка ответ должен пересобраться");
+        assertArrayEquals(objectMapper.writeValueAsBytes(filmService.getTopFilms(10)), after.getJson(),
+                "Ответ должен учитывать новый лайк");
+        assertNull(after.getGzip(), "Сжатие выключено");
+    }
+
+    // до конца интервала пересборки отдается прежний ответ
+    @Test
+    void throttleRebuilds() {
+        addFilmsAndUser(2);
+        PopularFilmsCache cache = createCache(60_000);
+        PopularFilmsCache.Response before = cache.get(10);
+        filmService.addLike(2, 1);
+        assertSame(before, cache.get(10), "Ответ не должен пересобираться чаще интервала");
+    }
+
+    // ---------------------------------------------
+    //  ШАБЛОНЫ
+    // ---------------------------------------------
+
+    private PopularFilmsCache createCache(long minRebuildIntervalMs) {
+        return new PopularFilmsCache(filmService, versions, objectMapper, new SimpleMeterRegistry(),
+                staleServing, false, minRebuildIntervalMs, 10);
+    }
+
+    private void addFilmsAndUser(int films) {
+        for (int i = 1; i <= films; i++) {
+            Film film = new Film();
+            film.setName("Movie " + i);
+            film.setReleaseDate(LocalDate.of(2000, 1, i));
+            filmService.add(film);
+        }
+        User user = new User();
+        user.setEmail("user@example.com");
+        user.setLogin("user");
+        user.setName("user");
+        userService.add(user);
+    }
+}
@@ -0,0 +1,207 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.MutationAction;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.impl.FilmLikeCounters;
+import ru.yandex.practicum.filmorate.storage.impl.UserDbStorage;
+
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class FilmCacheTest {
+
+    private final FilmCache filmCache;
+    private final FilmService filmService;
+    private final FilmDbStorage filmStorage;
+    private final UserDbStorage userStorage;
+    private final FilmLikeCounters likeCounters;
+
+    // получить фильм повторно — второй запрос обслуживается кешем
+    @Test
+    void getFilmFromCache() {
+        addFilmsAndUsers(1, 0);
+        Film first = filmService.get(1);
+        Film second = filmService.get(1);
+        assertSame(first, second, "Ожидался фильм из кеша");
+        assertEquals(1, filmCache.getStats().missCount(), "Ожидался один промах");
+        assertEquals(1, filmCache.getStats().hitCount(), "Ожидалось одно попадание");
+    }
+
+    // лайк исправляет фильм в кеше без повторной загрузки
+    @Test
+    void likePatchesCachedFilm() {
+        addFilmsAndUsers(1, 2);
+        Film cached = filmService.get(1);
+        filmService.addLike(1, 1);
+        filmService.addLike(1, 2);
+        filmService.removeLike(1, 1);
+
+        Film film = filmService.get(1);
+        assertNotSame(cached, film, "Фильм в кеше должен заменяться копией");
+        assertEquals(Set.of(), cached.getLikes(), "Выданный ранее фильм не должен меняться");
+        assertEquals(Set.of(2), film.getLikes(), "Неверный список лайков в кеше");
+        assertEquals(1, film.getTotalLikes(), "Неверный счетчик лайков в кеше");
+        likeCounters.flush();
+        assertEquals(filmStorage.get(1), film, "Фильм в кеше должен совпадать с базой");
+        assertEquals(1, filmCache.getStats().missCount(), "Фильм не должен загружаться повторно");
+
+        filmCache.onLikeChanged(1, 2, MutationAction.ADD);
+        assertSame(film, filmService.get(1), "Повторный лайк не должен менять запись");
+    }
+
+    // обновление фильма удаляет его из кеша
+    @Test
+    void updateInvalidatesCachedFilm() {
+        addFilmsAndUsers(1, 0);
+        filmService.get(1);
+        Film update = filmStorage.get(1);
+        update.setName("Updated");
+        filmService.update(update);
+        assertEquals("Updated", filmService.get(1).getName(), "Фильм в кеше не обновлен");
+        assertEquals("Updated", filmService.get(1).getName(), "Фильм в кеше не обновлен");
+    }
+
+    // размер кеша ограничен суммарным весом: фильм с большим списком лайков вытесняет другие
+    @Test
+    void evictByWeight() {
+        FilmCache smallCache = new FilmCache(new SimpleMeterRegistry(), createStaleServing(60_000, 1000), 10);
+        for (int i = 1; i <= 5; i++) {
+            smallCache.get(i, this::createFilm);
+        }
+        Film popular = createFilm(6);
+        popular.setLikes(IntStream.rangeClosed(1, 8).boxed().collect(Collectors.toSet()));
+        smallCache.get(6, id -> popular);
+        smallCache.cleanUp();
+
+        assertTrue(smallCache.getStats().evictionCount() > 0, "Ожидалось вытеснение");
+        assertTrue(smallCache.getStats().evictionWeight() >= 4, "Суммарный вес не должен превышать ограничение");
+    }
+
+    // база не уложилась в бюджет задержки — отдается последняя удачная версия с пометкой,
+    // а новая версия попадает в кеш, когда загрузка завершится
+    @Test
+    void serveStaleWhenLoadIsSlow() throws InterruptedException {
+        FilmCache cache = new FilmCache(new SimpleMeterRegistry(), createStaleServing(60_000, 50), 100);
+        cache.get(1, this::createFilm);
+        cache.invalidate(1);
+
+        CountDownLatch release = new CountDownLatch(1);
+        CachedValue<Film> stale = cache.getCached(1, id -> slowLoad(id, release, "Reloaded"));
+        assertTrue(stale.isStale(), "Ожидалось устаревшее значение");
+        assertEquals("Movie 1", stale.getValue().getName(), "Ожидалась последняя удачная версия");
+
+        release.countDown();
+        CachedValue<Film> fresh = awaitFresh(cache);
+        assertEquals("Reloaded", fresh.getValue().getName(), "Новая версия должна попасть в кеш");
+    }
+
+    // мягкий TTL истек — значение отдается сразу, обновление идет в фоне
+    @Test
+    void serveExpiredAndRefreshInBackground() throws InterruptedException {
+        FilmCache cache = new FilmCache(new SimpleMeterRegistry(), createStaleServing(100, 1000), 100);
+        cache.get(1, this::createFilm);
+        Thread.sleep(150);
+
+        CountDownLatch release = new CountDownLatch(1);
+        CachedValue<Film> expired = cache.getCached(1, id -> slowLoad(id, release, "Refreshed"));
+        assertFalse(expired.isStale(), "Значение после мягкого TTL не помечается устаревшим");
+        assertEquals("Movie 1", expired.getValue().getName(), "Ожидалось прежнее значение без ожидания");
+
+        release.countDown();
+        assertEquals("Refreshed", awaitFresh(cache).getValue().getName(), "Фоновое обновление не попало в кеш");
+    }
+
+    // фильм изменился во время фонового обновления — запрос не присоединяется к загрузке,
+    // начатой до изменения, а загружает фильм заново
+    @Test
+    void reloadIgnoresRefreshStartedBeforeInvalidation() throws InterruptedException {
+        StaleServing staleServing = new StaleServing(new SimpleMeterRegistry(), true, 100, 1000, 2, 10);
+        FilmCache cache = new FilmCache(new SimpleMeterRegistry(), staleServing, 100);
+        cache.get(1, this::createFilm);
+        Thread.sleep(150);
+
+        CountDownLatch release = new CountDownLatch(1);
+        cache.getCached(1, id -> slowLoad(id, release, "Before update"));
+        cache.invalidate(1);
+
+        CachedValue<Film> reloaded = cache.getCached(1, id -> new Film(id, "After update", 0));
+        release.countDown();
+        assertFalse(reloaded.isStale(), "Ожидалось актуальное значение");
+        assertEquals("After update", reloaded.getValue().getName(),
+                "Загрузка, начатая до изменения, не должна отдаваться как актуальная");
+
+        Thread.sleep(100);
+        assertEquals("After update", cache.get(1, this::createFilm).getName(),
+                "Загрузка, начатая до изменения, не должна заменять более новую");
+    }
+
+    // ---------------------------------------------
+    //  ШАБЛОНЫ
+    // ---------------------------------------------
+
+    private StaleServing createStaleServing(long softTtlMs, long latencyBudgetMs) {
+        return new StaleServing(new SimpleMeterRegistry(), true, softTtlMs, latencyBudgetMs, 1, 10);
+    }
+
+    private Film slowLoad(int id, CountDownLatch release, String name) {
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return new Film(id, name, 0);
+    }
+
+    private CachedValue<Film> awaitFresh(FilmCache cache) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            CachedValue<Film> cached = cache.getCached(1, this::createFilm);
+            if (!cached.isStale() && !cached.getValue().getName().equals("Movie 1")) {
+                return cached;
+            }
+            Thread.sleep(20);
+        }
+        throw new AssertionError("Загрузка не завершилась");
+    }
+
+    private Film createFilm(int id) {
+        return new Film(id, "Movie " + id, 0);
+    }
+
+    private void addFilmsAndUsers(int films, int users) {
+        for (int i = 1; i <= films; i++) {
+            Film film = new Film();
+            film.setName("Movie " + i);
+            filmStorage.add(film);
+        }
+        for (int i = 1; i <= users; i++) {
+            User user = new User();
+            user.setEmail("user" + i + "@example.com");
+            user.setLogin("user" + i);
+            user.setName("user" + i);
+            userStorage.add(user);
+        }
+    }
+}
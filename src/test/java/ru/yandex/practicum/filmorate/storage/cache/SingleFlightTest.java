@@ -0,0 +1,114 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.FilmService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class SingleFlightTest {
+
+    private final FilmService filmService;
+
+    // одновременные запросы с одним ключом выполняют одну загрузку и получают один результат
+    @Test
+    void collapseConcurrentCalls() throws Exception {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SingleFlight singleFlight = new SingleFlight(meterRegistry);
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Film result = new Film(1, "Movie", 0);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            Future<Film> leader = executor.submit(() -> singleFlight.execute("film", 1, () -> {
+                calls.incrementAndGet();
+                started.countDown();
+                await(release);
+                return result;
+            }));
+            started.await(5, TimeUnit.SECONDS);
+
+            List<Future<Film>> followers = new ArrayList<>();
+            for (int i = 0; i < 7; i++) {
+                followers.add(executor.submit(() -> singleFlight.execute("film", 1, () -> {
+                    calls.incrementAndGet();
+                    return new Film(1, "Other", 0);
+                })));
+            }
+            while (countCalls(meterRegistry, "collapsed") < 7) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            assertSame(result, leader.get(5, TimeUnit.SECONDS), "Ожидался результат загрузки");
+            for (Future<Film> follower : followers) {
+                assertSame(result, follower.get(5, TimeUnit.SECONDS), "Ожидался общий результат");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, calls.get(), "Загрузка должна выполниться один раз");
+        assertEquals(1, countCalls(meterRegistry, "executed"), "Неверное число выполненных загрузок");
+    }
+
+    // после завершения загрузки следующий запрос выполняет новую загрузку; ошибка пробрасывается
+    @Test
+    void executeAgainAfterCompletion() {
+        SingleFlight singleFlight = new SingleFlight(new SimpleMeterRegistry());
+        assertEquals(1, singleFlight.execute("film", 1, () -> 1), "Ожидался результат загрузки");
+        assertEquals(2, singleFlight.execute("film", 1, () -> 2), "Ожидалась новая загрузка");
+        assertThrows(IllegalStateException.class, () -> singleFlight.execute("film", 1, () -> {
+            throw new IllegalStateException();
+        }), "Ожидалась ошибка загрузки");
+        assertEquals(3, singleFlight.execute("film", 1, () -> 3), "Ошибка не должна оставаться в кеше");
+    }
+
+    // популярные фильмы загружаются через объединение запросов
+    @Test
+    void topFilmsThroughSingleFlight() {
+        Film film = new Film();
+        film.setName("Movie");
+        filmService.add(film);
+        assertEquals(1, filmService.getTopFilms(10).size(), "Ожидался один фильм");
+    }
+
+    // ---------------------------------------------
+    //  ШАБЛОНЫ
+    // ---------------------------------------------
+
+    private double countCalls(MeterRegistry meterRegistry, String result) {
+        return meterRegistry.counter("filmorate.singleflight.calls", "name", "film", "result", result).count();
+    }
+
+    private void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.impl.UserDbStorage;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class UserCacheTest {
+
+    private final UserCache userCache;
+    private final UserService userService;
+    private final UserDbStorage userStorage;
+
+    // изменение дружбы сбрасывает только список друзей, профиль остается в кеше
+    @Test
+    void friendChangeKeepsProfile() {
+        addUsers(3);
+        userService.get(1);
+        userService.addFriend(1, 2);
+        userService.addFriend(1, 3);
+        userService.removeFriend(1, 2);
+
+        User user = userService.get(1);
+        assertEquals(Set.of(3), user.getFriends(), "Неверный список друзей");
+        assertEquals(userStorage.get(1), user, "Пользователь из кеша должен совпадать с базой");
+        assertEquals(1, userCache.getProfileStats().missCount(),
+                "Профиль загружается один раз, профили друзей при изменении дружбы не читаются");
+        assertEquals(4, userCache.getFriendsStats().missCount(),
+                "Список друзей первого пользователя должен загружаться заново после каждого изменения");
+    }
+
+    // пользователь из кеша выдается копией, и ее изменение не затрагивает кеш
+    @Test
+    void getReturnsCopy() {
+        addUsers(2);
+        User first = userService.get(1);
+        first.getFriends().add(2);
+        first.setName("changed");
+
+        User second = userService.get(1);
+        assertNotSame(first, second, "Ожидалась новая копия пользователя");
+        assertEquals(Set.of(), second.getFriends(), "Изменение копии не должно попадать в кеш");
+        assertEquals("user1", second.getName(), "Изменение копии не должно попадать в кеш");
+    }
+
+    // обновление пользователя сбрасывает его профиль
+    @Test
+    void updateInvalidatesProfile() {
+        addUsers(1);
+        userService.get(1);
+        User update = userStorage.get(1);
+        update.setName("updated");
+        userService.update(update);
+        assertEquals("updated", userService.get(1).getName(), "Профиль в кеше не обновлен");
+    }
+
+    // выключенный кеш каждый раз обращается к хранилищу
+    @Test
+    void disabledCacheLoadsEveryTime() {
+        addUsers(1);
+        UserCache disabled = new UserCache(new SimpleMeterRegistry(), false, 10, 10);
+        disabled.get(1, id -> userStorage.get(id, false), userStorage::getFriendIds);
+        disabled.get(1, id -> userStorage.get(id, false), userStorage::getFriendIds);
+        assertEquals(0, disabled.getProfileStats().requestCount(), "Выключенный кеш не должен использоваться");
+        assertNull(disabled.get(9, id -> userStorage.get(id, false), userStorage::getFriendIds),
+                "Ожидалось получить null");
+    }
+
+    // ---------------------------------------------
+    //  ШАБЛОНЫ
+    // ---------------------------------------------
+
+    private void addUsers(int users) {
+        for (int i = 1; i <= users; i++) {
+            User user = new User();
+            user.setEmail("user" + i + "@example.com");
+            user.setLogin("user" + i);
+            user.setName("user" + i);
+            user.setBirthday(LocalDate.of(1990, 1, i));
+            userService.add(user);
+        }
+    }
+}
@@ -5,23 +5,37 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.test.annotation.DirtiesContext;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmPatch;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeMutation;
 import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.MutationAction;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
+import javax.sql.DataSource;
 import java.time.LocalDate;
 import java.time.Month;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest
 @AutoConfigureTestDatabase
@@ -31,6 +45,13 @@ class FilmDbStorageTest {
 
     private final FilmDbStorage filmStorage;
     private final UserDbStorage userStorage;
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final GenreDbStorage genreStorage;
+    private final MpaDbStorage mpaStorage;
+    private final IdGenerator idGenerator;
+    private final FilmLikeCounters likeCounters;
 
 
     // добавить и получить фильм
@@ -89,6 +110,47 @@ class FilmDbStorageTest {
         assertEquals(0, films.size(), "Список должен быть пустым");
     }
 
+    // получить фильмы с жанрами, рейтингом и лайками
+    @Test
+    void getAllFilmsWithGenresMpaAndLikes() {
+        generateTopFilms(filmStorage, userStorage);
+
+        List<Film> films = filmStorage.getAll();
+        Film film3 = films.get(2);
+
+        assertEquals(4, films.size(), "Ожидалось другое количество фильмов");
+        assertEquals(3, film3.getGenres().size(), "Неверное количество жанров");
+        assertEquals(3, film3.getLikes().size(), "Неверное количество лайков");
+        assertNotNull(film3.getMpa().getName(), "Не загружено название рейтинга");
+        assertSame(mpaStorage.get(film3.getMpa().getId()), film3.getMpa(), "Рейтинг должен браться из справочника");
+        assertEquals(1, films.get(0).getLikes().size(), "Лайки загружены не тому фильму");
+    }
+
+    // получить фильмы — число запросов не зависит от количества фильмов
+    @Test
+    void getFilmsWithFixedNumberOfQueries() {
+        QueryCountingDataSource countingDataSource = new QueryCountingDataSource(dataSource);
+        FilmDbStorage countingStorage = createCountingStorage(countingDataSource);
+
+        countingStorage.add(createFilm());
+        countingDataSource.reset();
+        countingStorage.getAll();
+        int queriesForOneFilm = countingDataSource.getQueryCount();
+
+        generateTopFilms(countingStorage, userStorage);
+        countingDataSource.reset();
+        List<Film> films = countingStorage.getAll();
+        int queriesForAllFilms = countingDataSource.getQueryCount();
+
+        countingDataSource.reset();
+        countingStorage.getTopFilms(films.size());
+        int queriesForTopFilms = countingDataSource.getQueryCount();
+
+        assertEquals(5, films.size(), "Ожидалось другое количество фильмов");
+        assertEquals(queriesForOneFilm, queriesForAllFilms, "Число запросов зависит от количества фильмов");
+        assertEquals(queriesForOneFilm, queriesForTopFilms, "Число запросов зависит от количества фильмов");
+    }
+
     // обновить данные о фильме
     @Test
     void updateFilm() {
@@ -119,7 +181,10 @@ class FilmDbStorageTest {
         Film filmToUpdate = createFilm2();
         filmToUpdate.setId(idNotInDatabase);
 
-        assertThrows(Throwable.class, () -> filmStorage.update(filmToUpdate));
+        assertFalse(filmStorage.update(filmToUpdate), "Обновление отсутствующего фильма должно вернуть false");
+        assertEquals(1, filmStorage.getAll().size(), "В базе неверное число фильмов");
+        assertFalse(filmStorage.exists(idNotInDatabase), "Фильм не должен появиться в базе");
+        assertTrue(filmStorage.exists(film.getId()), "Фильм должен быть в базе");
     }
 
     // добавить лайк
@@ -344,11 +409,203 @@ class FilmDbStorageTest {
         assertEquals(films.size(), topFilms.size(), "Списки фильмов должны совпадать");
     }
 
+    // выгрузить все фильмы потоком
+    @Test
+    void streamAllFilms() {
+        generateTopFilms(filmStorage, userStorage);
+
+        List<Film> streamed = new ArrayList<>();
+        filmStorage.streamAll(streamed::add);
+
+        assertEquals(4, streamed.size(), "Неверное количество фильмов");
+        assertEquals(4, streamed.get(3).getId(), "Неверный порядок фильмов");
+        assertEquals(4, streamed.get(3).getLikes().size(), "Не загружены лайки");
+        assertEquals(1, streamed.get(3).getGenres().size(), "Не загружены жанры");
+    }
+
+    // лайки меняют счетчик фильма только на фактическую разницу
+    @Test
+    void likesChangeTotalLikesByActualDelta() {
+        Film film = createFilm();
+        filmStorage.add(film);
+        userStorage.add(createUser());
+        userStorage.add(createAnotherUser());
+
+        assertTrue(filmStorage.addLike(1, 1), "Лайк должен быть добавлен");
+        assertFalse(filmStorage.addLike(1, 1), "Повторный лайк не должен добавляться");
+        assertTrue(filmStorage.addLike(1, 2), "Лайк должен быть добавлен");
+        assertTrue(filmStorage.removeLike(1, 2), "Лайк должен быть удален");
+        assertFalse(filmStorage.removeLike(1, 2), "Удаленный лайк не должен удаляться повторно");
+        likeCounters.flush();
+
+        assertEquals(1, filmStorage.get(1).getTotalLikes(), "Неверный счетчик лайков");
+    }
+
+    // обновление фильма не перезаписывает счетчик лайков
+    @Test
+    void updateFilmKeepsTotalLikes() {
+        Film film = createFilm();
+        filmStorage.add(film);
+        userStorage.add(createUser());
+        filmStorage.addLike(film.getId(), 1);
+
+        Film filmToUpdate = createFilm2();
+        filmToUpdate.setId(film.getId());
+        filmStorage.update(filmToUpdate);
+        likeCounters.flush();
+
+        Film savedFilm = filmStorage.get(film.getId(), false);
+        assertEquals(1, savedFilm.getTotalLikes(), "Счетчик лайков не должен меняться");
+        assertEquals(0, savedFilm.getLikes().size(), "Список лайков не должен загружаться");
+    }
+
+    // счетчик лайков пишется в базу отложенно, а читается только из базы
+    @Test
+    void likeCountersAreWrittenBehind() {
+        FilmLikeCounters likeCounters = new FilmLikeCounters(jdbcTemplate, true);
+        FilmDbStorage filmStorage = new FilmDbStorage(jdbcTemplate, transactionTemplate, likeCounters,
+                genreStorage, mpaStorage, idGenerator);
+        Film film = createFilm();
+        filmStorage.add(film);
+        userStorage.add(createUser());
+        userStorage.add(createAnotherUser());
+        final String sqlQuery = "select LIKES from FILMS where FILM_ID = ?";
+
+        filmStorage.addLike(film.getId(), 1);
+        filmStorage.addLike(film.getId(), 2);
+        int likesBeforeFlush = jdbcTemplate.queryForObject(sqlQuery, Integer.class, film.getId());
+        int totalLikesBeforeFlush = filmStorage.get(film.getId()).getTotalLikes();
+
+        likeCounters.flush();
+        int likesAfterFlush = jdbcTemplate.queryForObject(sqlQuery, Integer.class, film.getId());
+        int totalLikesAfterFlush = filmStorage.get(film.getId()).getTotalLikes();
+
+        assertEquals(0, likesBeforeFlush, "Счетчик не должен записываться сразу");
+        assertEquals(0, totalLikesBeforeFlush, "Чтение не должно учитывать счетчик в памяти");
+        assertEquals(2, likesAfterFlush, "Счетчик должен быть записан в базу");
+        assertEquals(2, totalLikesAfterFlush, "Счетчик не должен учитываться дважды");
+    }
+
+    // пересчет счетчиков при запуске другого экземпляра не приводит к двойному учету,
+    // а записанные изменения не остаются в памяти
+    @Test
+    void likeCountersSurviveReconcileOnAnotherNode() {
+        FilmLikeCounters likeCounters = new FilmLikeCounters(jdbcTemplate, true);
+        FilmDbStorage filmStorage = new FilmDbStorage(jdbcTemplate, transactionTemplate, likeCounters,
+                genreStorage, mpaStorage, idGenerator);
+        Film film = createFilm();
+        filmStorage.add(film);
+        userStorage.add(createUser());
+        userStorage.add(createAnotherUser());
+        final String sqlQuery = "select LIKES from FILMS where FILM_ID = ?";
+
+        filmStorage.addLike(film.getId(), 1);
+        filmStorage.addLike(film.getId(), 2);
+        new FilmLikeCounters(jdbcTemplate, true).reconcile();
+        likeCounters.flush();
+
+        assertEquals(2, jdbcTemplate.queryForObject(sqlQuery, Integer.class, film.getId()),
+                "Лайк не должен учитываться дважды");
+        assertEquals(0, likeCounters.getPendingCount(), "Записанные изменения должны удаляться из памяти");
+
+        filmStorage.removeLike(film.getId(), 1);
+        filmStorage.addLike(film.getId(), 1);
+        likeCounters.flush();
+        assertEquals(0, likeCounters.getPendingCount(), "Нулевые изменения должны удаляться из памяти");
+        assertEquals(2, filmStorage.get(film.getId()).getTotalLikes(), "Неверный счетчик лайков");
+    }
+
+    // применить пакет лайков — операции выполняются по порядку
+    @Test
+    void applyLikesInOrder() {
+        Film film = createFilm();
+        User user = createUser();
+        filmStorage.add(film);
+        userStorage.add(user);
+
+        boolean[] changed = filmStorage.applyLikes(List.of(
+                new LikeMutation(film.getId(), user.getId(), MutationAction.ADD),
+                new LikeMutation(film.getId(), user.getId(), MutationAction.ADD),
+                new LikeMutation(film.getId(), user.getId(), MutationAction.REMOVE),
+                new LikeMutation(film.getId(), user.getId(), MutationAction.ADD)));
+        likeCounters.flush();
+        Film savedFilm = filmStorage.get(film.getId());
+
+        assertArrayEquals(new boolean[]{true, false, true, true}, changed, "Неверные результаты операций");
+        assertEquals(1, savedFilm.getLikes().size(), "Неверное количество лайков");
+        assertEquals(1, savedFilm.getTotalLikes(), "Неверный счетчик лайков");
+    }
+
+    // частично обновить фильм — в базу уходит одно UPDATE только с переданной колонкой
+    @Test
+    void patchFilmDescription() {
+        QueryCountingDataSource countingDataSource = new QueryCountingDataSource(dataSource);
+        FilmDbStorage countingStorage = createCountingStorage(countingDataSource);
+        Film film = createFilm();
+        countingStorage.add(film);
+
+        FilmPatch patch = new FilmPatch();
+        patch.setDescription("New description");
+        countingDataSource.reset();
+        boolean patched = countingStorage.patch(film.getId(), patch);
+        int queries = countingDataSource.getQueryCount();
+
+        Film filmPatched = filmStorage.get(film.getId());
+        assertTrue(patched, "Фильм должен обновиться");
+        assertEquals(1, queries, "Частичное обновление должно идти одним запросом");
+        assertEquals("New description", filmPatched.getDescription(), "Описание не обновлено");
+        assertEquals(film.getName(), filmPatched.getName(), "Название не должно меняться");
+        assertEquals(film.getMpa().getId(), filmPatched.getMpa().getId(), "Рейтинг не должен меняться");
+        assertEquals(List.of(createGenre1().getId()),
+                filmPatched.getGenres().stream().map(Genre::getId).collect(Collectors.toList()),
+                "Жанры не должны меняться");
+    }
+
+    // частично обновить жанры — записывается только разница с текущими жанрами
+    @Test
+    void patchFilmGenres() {
+        QueryCountingDataSource countingDataSource = new QueryCountingDataSource(dataSource);
+        FilmDbStorage countingStorage = createCountingStorage(countingDataSource);
+        Film film = createFilm3();
+        countingStorage.add(film);
+
+        FilmPatch patch = new FilmPatch();
+        patch.setGenres(Set.of(createGenre2(), createGenre3()));
+        assertTrue(countingStorage.patch(film.getId(), patch), "Фильм должен обновиться");
+        assertEquals(Set.of(createGenre2().getId(), createGenre3().getId()),
+                filmStorage.get(film.getId()).getGenres().stream().map(Genre::getId).collect(Collectors.toSet()),
+                "Неверные жанры после обновления");
+
+        countingDataSource.reset();
+        assertTrue(countingStorage.patch(film.getId(), patch), "Фильм должен обновиться");
+        assertEquals(2, countingDataSource.getQueryCount(),
+                "Без изменений жанров должны выполняться только проверка фильма и чтение жанров");
+    }
+
+    // частично обновить фильм — ID нет в базе
+    @Test
+    void patchFilmWithIdNotInDatabase() {
+        FilmPatch patch = new FilmPatch();
+        patch.setName("MotionPicture");
+        FilmPatch genresPatch = new FilmPatch();
+        genresPatch.setGenres(Set.of(createGenre1()));
+
+        assertFalse(filmStorage.patch(1, patch), "Обновление отсутствующего фильма должно вернуть false");
+        assertFalse(filmStorage.patch(1, genresPatch), "Обновление отсутствующего фильма должно вернуть false");
+    }
+
 
     // ---------------------------------------------
     //  ШАБЛОНЫ
     // ---------------------------------------------
 
+    private FilmDbStorage createCountingStorage(QueryCountingDataSource countingDataSource) {
+        JdbcTemplate countingJdbcTemplate = new JdbcTemplate(countingDataSource);
+        return new FilmDbStorage(countingJdbcTemplate,
+                new TransactionTemplate(new DataSourceTransactionManager(countingDataSource)),
+                new FilmLikeCounters(countingJdbcTemplate, false), genreStorage, mpaStorage, idGenerator);
+    }
+
     private Film createFilm() {
         Film film = new Film();
         film.setId(1);
@@ -357,8 +614,7 @@ class FilmDbStorageTest {
         film.setReleaseDate(LocalDate.of(2000, Month.DECEMBER, 28));
         film.setDuration(100);
 
-        film.setMpa(new Mpa());
-        film.getMpa().setId(1);
+        film.setMpa(new Mpa(1, null));
 
         film.getGenres().add(createGenre1());
 
@@ -373,8 +629,7 @@ class FilmDbStorageTest {
         film.setReleaseDate(LocalDate.of(2010, Month.JUNE, 21));
         film.setDuration(200);
 
-        film.setMpa(new Mpa());
-        film.getMpa().setId(2);
+        film.setMpa(new Mpa(2, null));
 
         film.getGenres().add(createGenre2());
         film.getGenres().add(createGenre3());
@@ -390,8 +645,7 @@ class FilmDbStorageTest {
         film.setReleaseDate(LocalDate.of(1950, Month.OCTOBER, 15));
         film.setDuration(120);
 
-        film.setMpa(new Mpa());
-        film.getMpa().setId(2);
+        film.setMpa(new Mpa(2, null));
 
         film.getGenres().add(createGenre3());
         film.getGenres().add(createGenre2());
@@ -408,8 +662,7 @@ class FilmDbStorageTest {
         film.setReleaseDate(LocalDate.of(1950, Month.APRIL, 7));
         film.setDuration(200);
 
-        film.setMpa(new Mpa());
-        film.getMpa().setId(3);
+        film.setMpa(new Mpa(3, null));
 
         film.getGenres().add(createGenre3());
 
@@ -417,21 +670,15 @@ class FilmDbStorageTest {
     }
 
     private Genre createGenre1() {
-        Genre genre = new Genre();
-        genre.setId(1);
-        return genre;
+        return new Genre(1, null);
     }
 
     private Genre createGenre2() {
-        Genre genre = new Genre();
-        genre.setId(2);
-        return genre;
+        return new Genre(2, null);
     }
 
     private Genre createGenre3() {
-        Genre genre = new Genre();
-        genre.setId(3);
-        return genre;
+        return new Genre(3, null);
     }
 
     private User createUser() {
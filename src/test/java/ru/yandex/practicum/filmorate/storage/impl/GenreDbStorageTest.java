@@ -6,13 +6,18 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.jdbc.core.JdbcTemplate;
 import ru.yandex.practicum.filmorate.model.Genre;
 
+import javax.sql.DataSource;
+
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 @SpringBootTest
 @AutoConfigureTestDatabase
@@ -20,6 +25,8 @@ import static org.junit.jupiter.api.Assertions.assertNull;
 @DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
 class GenreDbStorageTest {
     private final GenreDbStorage genreDbStorage;
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
 
     // получить все жанры
     @Test
@@ -45,4 +52,41 @@ class GenreDbStorageTest {
         Genre receivedGenre = genreDbStorage.get(invalidId);
         assertNull(receivedGenre, "Ожидалось получить null");
     }
+
+    // получить жанр — справочник читается без запросов к базе и отдает один и тот же экземпляр
+    @Test
+    void getGenreFromDictionaryWithoutQueries() {
+        QueryCountingDataSource countingDataSource = new QueryCountingDataSource(dataSource);
+        GenreDbStorage storage = new GenreDbStorage(new JdbcTemplate(countingDataSource));
+        storage.refresh();
+        countingDataSource.reset();
+
+        Genre genre = storage.get(1);
+        storage.getAll();
+        assertSame(genre, storage.get(1), "Ожидался тот же экземпляр жанра");
+        assertEquals(0, countingDataSource.getQueryCount(), "Справочник не должен обращаться к базе");
+    }
+
+    // обновить справочник — без изменений в базе версия и экземпляры сохраняются
+    @Test
+    void refreshWithoutChanges() {
+        String version = genreDbStorage.getVersion();
+        Genre genre = genreDbStorage.get(1);
+        genreDbStorage.refresh();
+        assertEquals(version, genreDbStorage.getVersion(), "Версия справочника не должна меняться");
+        assertSame(genre, genreDbStorage.get(1), "Экземпляр жанра не должен меняться");
+    }
+
+    // обновить справочник — после изменения в базе меняется версия и появляется новый жанр
+    @Test
+    void refreshAfterChanges() {
+        String version = genreDbStorage.getVersion();
+        jdbcTemplate.update("insert into GENRES (GENRE_ID, GENRE) values (7, 'Вестерн')");
+        assertNull(genreDbStorage.get(7), "Справочник не должен обновляться до refresh");
+
+        genreDbStorage.refresh();
+        assertNotEquals(version, genreDbStorage.getVersion(), "Версия справочника должна измениться");
+        assertEquals("Вестерн", genreDbStorage.get(7).getName(), "Новый жанр не загружен");
+        assertEquals(7, genreDbStorage.getAll().size(), "Ожидалось другое количество объектов");
+    }
 }
\ No newline at end of file
@@ -0,0 +1,113 @@
+package ru.yandex.practicum.filmorate.storage.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class IdGeneratorTest {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final FilmDbStorage filmStorage;
+
+    // ID выдаются по порядку, следующий блок резервируется, когда текущий закончился
+    @Test
+    void allocateBlocks() {
+        IdGenerator generator = new IdGenerator(jdbcTemplate, transactionTemplate, 3);
+        IdGenerator otherNode = new IdGenerator(jdbcTemplate, transactionTemplate, 3);
+
+        assertEquals(List.of(1, 2), List.of(generator.nextFilmId(), generator.nextFilmId()), "Неверные ID");
+        assertEquals(4, otherNode.nextFilmId(), "Второй узел должен получить следующий блок");
+        assertEquals(List.of(3, 7), List.of(generator.nextFilmId(), generator.nextFilmId()),
+                "После конца блока должен резервироваться новый");
+        assertEquals(1, generator.nextUserId(), "ID пользователей выдаются отдельно");
+    }
+
+    // одновременные запросы двух узлов получают разные ID
+    @Test
+    void uniqueUnderConcurrency() throws Exception {
+        List<IdGenerator> nodes = List.of(new IdGenerator(jdbcTemplate, transactionTemplate, 10), new IdGenerator(jdbcTemplate, transactionTemplate, 10));
+        Set<Integer> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                IdGenerator node = nodes.get(i % 2);
+                tasks.add(executor.submit(() -> {
+                    for (int j = 0; j < 500; j++) {
+                        ids.add(node.nextUserId());
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(4000, ids.size(), "ID не должны повторяться");
+    }
+
+    // новые ID выдаются после уже занятых в базе
+    @Test
+    void skipExistingIds() {
+        jdbcTemplate.update("insert into FILMS (FILM_ID, NAME, LIKES) values (120, 'Old movie', 0)");
+        IdGenerator generator = new IdGenerator(jdbcTemplate, transactionTemplate, 50);
+        generator.init();
+        assertTrue(generator.nextFilmId() > 120, "ID должен быть больше уже занятых");
+
+        Film film = new Film();
+        film.setName("Movie");
+        filmStorage.add(film);
+        assertTrue(film.getId() > 120, "Фильм должен получить свободный ID");
+    }
+
+    // узлы, запущенные одновременно, не возвращают последовательность назад друг за другом
+    @Test
+    void skipExistingIdsConcurrently() throws Exception {
+        jdbcTemplate.update("insert into USERS (USER_ID, EMAIL, LOGIN, USER_NAME) values (120, 'a@b.c', 'old', 'old')");
+        List<IdGenerator> nodes = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            nodes.add(new IdGenerator(jdbcTemplate, transactionTemplate, 50));
+        }
+        Set<Integer> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(nodes.size());
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (IdGenerator node : nodes) {
+                tasks.add(executor.submit(() -> {
+                    node.init();
+                    ids.add(node.nextUserId());
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(nodes.size(), ids.size(), "Узлы не должны получать один и тот же блок");
+        assertTrue(ids.stream().allMatch(id -> id > 120), "ID должны быть больше уже занятых");
+    }
+}
@@ -5,17 +5,24 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.yandex.practicum.filmorate.model.User;
 
+import javax.sql.DataSource;
 import java.time.LocalDate;
 import java.time.Month;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest
 @AutoConfigureTestDatabase
@@ -23,6 +30,9 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 @DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
 class UserDbStorageTest {
     private final UserDbStorage userStorage;
+    private final DataSource dataSource;
+    private final TransactionTemplate transactionTemplate;
+    private final IdGenerator idGenerator;
 
     // добавить и получить пользователя
     @Test
@@ -90,7 +100,7 @@ class UserDbStorageTest {
         User updatedUser = createAnotherUser();
         updatedUser.setId(expectedId);
 
-        userStorage.update(updatedUser);
+        assertTrue(userStorage.update(updatedUser), "Обновление должно вернуть true");
 
         User savedUser = userStorage.get(expectedId);
 
@@ -109,7 +119,8 @@ class UserDbStorageTest {
         User updatedUser = createAnotherUser();
         updatedUser.setId(idNotInDatabase);
 
-        userStorage.update(updatedUser);
+        assertFalse(userStorage.update(updatedUser), "Обновление отсутствующего пользователя должно вернуть false");
+        assertFalse(userStorage.exists(idNotInDatabase), "Пользователь не должен появиться в базе");
 
         List<User> users = userStorage.getAll();
         assertEquals(1, users.size(),
@@ -159,6 +170,91 @@ class UserDbStorageTest {
         assertEquals(tony.getEmail(), friends.get(1).getEmail(), "Поля email не совпадают");
     }
 
+    // получить друзей пользователя — у каждого друга загружен свой список друзей
+    @Test
+    void getFriendsWithTheirFriends() {
+        userStorage.add(createUser());
+        userStorage.add(createSonya());
+        userStorage.add(createTony());
+
+        userStorage.addFriend(1, 2);
+        userStorage.addFriend(1, 3);
+        userStorage.addFriend(2, 3);
+        userStorage.addFriend(3, 1);
+
+        List<User> friends = userStorage.getFriends(1);
+
+        assertEquals(Set.of(3), friends.get(0).getFriends(), "Неверный список друзей у друга");
+        assertEquals(Set.of(1), friends.get(1).getFriends(), "Неверный список друзей у друга");
+    }
+
+    // получить друзей пользователя — без списков их друзей
+    @Test
+    void getFriendsWithoutTheirFriends() {
+        userStorage.add(createUser());
+        userStorage.add(createSonya());
+
+        userStorage.addFriend(1, 2);
+        userStorage.addFriend(2, 1);
+
+        List<User> friends = userStorage.getFriends(1, false);
+
+        assertEquals(1, friends.size(), "Неверное число друзей");
+        assertEquals(0, friends.get(0).getFriends().size(), "Список друзей не должен загружаться");
+    }
+
+    // получить друзей пользователя — число запросов не зависит от количества друзей
+    @Test
+    void getFriendsWithFixedNumberOfQueries() {
+        QueryCountingDataSource countingDataSource = new QueryCountingDataSource(dataSource);
+        UserDbStorage countingStorage = new UserDbStorage(new JdbcTemplate(countingDataSource),
+                transactionTemplate, idGenerator);
+
+        countingStorage.add(createUser());
+        countingStorage.add(createAnotherUser());
+        countingStorage.addFriend(1, 2);
+        countingDataSource.reset();
+        countingStorage.getFriends(1);
+        int queriesForOneFriend = countingDataSource.getQueryCount();
+
+        countingStorage.add(createSonya());
+        countingStorage.add(createTony());
+        countingStorage.addFriend(1, 3);
+        countingStorage.addFriend(1, 4);
+        countingDataSource.reset();
+        List<User> friends = countingStorage.getFriends(1);
+        int queriesForThreeFriends = countingDataSource.getQueryCount();
+
+        assertEquals(3, friends.size(), "Неверное число друзей");
+        assertEquals(queriesForOneFriend, queriesForThreeFriends, "Число запросов зависит от количества друзей");
+    }
+
+    // обновить пользователя и друзей — каждая запись идет одним запросом, без предварительного чтения
+    @Test
+    void writesUseSingleQuery() {
+        QueryCountingDataSource countingDataSource = new QueryCountingDataSource(dataSource);
+        UserDbStorage countingStorage = new UserDbStorage(new JdbcTemplate(countingDataSource),
+                transactionTemplate, idGenerator);
+
+        countingStorage.add(createUser());
+        countingStorage.add(createAnotherUser());
+        User updatedUser = createSonya();
+        updatedUser.setId(1);
+
+        countingDataSource.reset();
+        assertTrue(countingStorage.update(updatedUser), "Обновление должно вернуть true");
+        assertEquals(1, countingDataSource.getQueryCount(), "Обновление должно идти одним запросом");
+
+        countingDataSource.reset();
+        assertTrue(countingStorage.addFriend(1, 2), "Дружба должна добавиться");
+        assertEquals(1, countingDataSource.getQueryCount(), "Добавление друга должно идти одним запросом");
+
+        countingDataSource.reset();
+        assertTrue(countingStorage.removeFriend(1, 2), "Дружба должна удалиться");
+        assertFalse(countingStorage.removeFriend(1, 2), "Повторное удаление не должно менять базу");
+        assertEquals(2, countingDataSource.getQueryCount(), "Удаление друга должно идти одним запросом");
+    }
+
     // получить друзей пользователя — ID пользователя нет в базе
     @Test
     void getFriendsWhenIdNotInDatabase() {
@@ -389,11 +485,12 @@ class UserDbStorageTest {
         userStorage.add(user);
         userStorage.add(anotherUser);
 
-        userStorage.addFriend(userExpectedId, anotherUserExpectedId);
+        assertTrue(userStorage.addFriend(userExpectedId, anotherUserExpectedId), "Дружба должна добавиться");
 
         List<User> friends = userStorage.getFriends(userExpectedId);
 
-        userStorage.addFriend(userExpectedId, anotherUserExpectedId);
+        assertFalse(userStorage.addFriend(userExpectedId, anotherUserExpectedId),
+                "Повторное добавление не должно менять базу");
 
         List<User> friendsAfterAdding = userStorage.getFriends(userExpectedId);
 
@@ -609,6 +706,41 @@ class UserDbStorageTest {
         assertEquals(0, someIdUserFriends.size(), "Список должен быть пустым");
     }
 
+    // получить друзей пользователя постранично
+    @Test
+    void getFriendsPage() {
+        userStorage.add(createUser());
+        userStorage.add(createAnotherUser());
+        userStorage.add(createSonya());
+        userStorage.add(createTony());
+
+        userStorage.addFriend(1, 2);
+        userStorage.addFriend(1, 3);
+        userStorage.addFriend(1, 4);
+
+        List<User> firstPage = userStorage.getFriendsPage(1, 0, 2, true);
+        List<User> secondPage = userStorage.getFriendsPage(1, firstPage.get(1).getId(), 2, true);
+
+        assertEquals(2, firstPage.size(), "Неверный размер первой страницы");
+        assertEquals(2, firstPage.get(0).getId(), "Неверный порядок друзей");
+        assertEquals(1, secondPage.size(), "Неверный размер второй страницы");
+        assertEquals(4, secondPage.get(0).getId(), "Неверный друг на второй странице");
+    }
+
+    // выгрузить всех пользователей потоком
+    @Test
+    void streamAllUsers() {
+        userStorage.add(createUser());
+        userStorage.add(createAnotherUser());
+        userStorage.addFriend(1, 2);
+
+        List<User> streamed = new ArrayList<>();
+        userStorage.streamAll(streamed::add);
+
+        assertEquals(2, streamed.size(), "Неверное число пользователей");
+        assertEquals(Set.of(2), streamed.get(0).getFriends(), "Не загружен список друзей");
+    }
+
 
     // ---------------------------------------------
     //  ШАБЛОНЫ
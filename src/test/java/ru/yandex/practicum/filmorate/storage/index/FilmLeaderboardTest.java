@@ -0,0 +1,87 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.impl.UserDbStorage;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class FilmLeaderboardTest {
+
+    private final FilmLeaderboard leaderboard;
+    private final FilmDbStorage filmStorage;
+    private final UserDbStorage userStorage;
+
+    // построить рейтинг по таблице FILMS
+    @Test
+    void rebuildFromDatabase() {
+        filmStorage.add(createFilm("Movie"));
+        filmStorage.add(createFilm("Motion Picture"));
+        filmStorage.add(createFilm("Video"));
+        userStorage.add(createUser("pxl"));
+        userStorage.add(createUser("byte"));
+        filmStorage.addLike(2, 1);
+        filmStorage.addLike(3, 1);
+        filmStorage.addLike(3, 2);
+
+        leaderboard.rebuild();
+
+        assertEquals(List.of(3, 2, 1), leaderboard.getTop(10), "Неверный порядок фильмов");
+        assertEquals(List.of(3, 2), leaderboard.getTop(2), "Неверный размер рейтинга");
+    }
+
+    // изменить рейтинг по событиям лайков
+    @Test
+    void changeLikes() {
+        leaderboard.put(1, 0);
+        leaderboard.put(2, 0);
+        leaderboard.put(3, 0);
+
+        leaderboard.changeLikes(3, 1);
+        leaderboard.changeLikes(1, 1);
+        leaderboard.changeLikes(1, 1);
+        leaderboard.changeLikes(3, -1);
+
+        assertEquals(List.of(1, 2, 3), leaderboard.getTop(3), "Неверный порядок фильмов");
+    }
+
+    // изменение лайков на ноль не убирает фильм из рейтинга
+    @Test
+    void changeLikesByZero() {
+        leaderboard.put(1, 5);
+        leaderboard.changeLikes(1, 0);
+
+        assertEquals(List.of(1), leaderboard.getTop(10), "Фильм должен остаться в рейтинге");
+    }
+
+    // ---------------------------------------------
+    //  ШАБЛОНЫ
+    // ---------------------------------------------
+
+    private Film createFilm(String name) {
+        Film film = new Film();
+        film.setName(name);
+        return film;
+    }
+
+    private User createUser(String login) {
+        User user = new User();
+        user.setEmail(login + "@example.com");
+        user.setLogin(login);
+        user.setName(login);
+        return user;
+    }
+}
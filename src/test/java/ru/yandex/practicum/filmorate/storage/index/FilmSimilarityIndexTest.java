@@ -0,0 +1,120 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.impl.UserDbStorage;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class FilmSimilarityIndexTest {
+
+    private final FilmSimilarityIndex similarityIndex;
+    private final LikeGraph likeGraph;
+    private final FilmService filmService;
+    private final FilmDbStorage filmStorage;
+    private final UserDbStorage userStorage;
+
+    // посчитать похожие фильмы по таблице FILM_LIKE
+    @Test
+    void rebuildFromDatabase() {
+        addFilmsAndUsers(5, 3);
+        filmStorage.addLike(1, 1);
+        filmStorage.addLike(2, 1);
+        filmStorage.addLike(3, 1);
+        filmStorage.addLike(1, 2);
+        filmStorage.addLike(2, 2);
+        filmStorage.addLike(1, 3);
+        filmStorage.addLike(3, 3);
+        filmStorage.addLike(4, 3);
+
+        likeGraph.rebuild();
+        similarityIndex.rebuild();
+
+        assertArrayEquals(new int[]{2, 3, 4}, similarityIndex.getSimilar(1, 10), "Неверный порядок похожих фильмов");
+        assertArrayEquals(new int[]{2}, similarityIndex.getSimilar(1, 1), "Неверный размер выдачи");
+        assertArrayEquals(new int[]{3, 1}, similarityIndex.getSimilar(4, 10), "Неверный порядок похожих фильмов");
+        assertArrayEquals(new int[0], similarityIndex.getSimilar(5, 10), "У фильма без лайков нет похожих");
+    }
+
+    // похожие фильмы обновляются по лайкам без полного пересчета
+    @Test
+    void similarFollowLikeChanges() {
+        addFilmsAndUsers(4, 3);
+        filmService.addLike(1, 1);
+        filmService.addLike(2, 1);
+        filmService.addLike(1, 2);
+        filmService.addLike(3, 2);
+        similarityIndex.refreshDirty();
+        assertEquals(List.of(2, 3), getIds(filmService.getSimilar(1, 10)), "Неверный список похожих фильмов");
+
+        filmService.addLike(3, 1);
+        similarityIndex.refreshDirty();
+        assertEquals(List.of(3, 2), getIds(filmService.getSimilar(1, 10)),
+                "Список похожих должен учитывать новый лайк");
+        assertEquals(List.of(1, 2), getIds(filmService.getSimilar(3, 10)),
+                "Список похожих должен учитывать новый лайк");
+
+        filmService.removeLike(1, 2);
+        similarityIndex.refreshDirty();
+        assertEquals(List.of(2, 3), getIds(filmService.getSimilar(1, 10)),
+                "Список похожих должен учитывать удаление лайка");
+    }
+
+    // устаревшая строка не пересчитывается при чтении: до фонового пересчета
+    // отдается прежняя строка
+    @Test
+    void staleRowsRefreshInBackground() {
+        addFilmsAndUsers(3, 2);
+        filmService.addLike(1, 1);
+        filmService.addLike(2, 1);
+        FilmSimilarityIndex index = new FilmSimilarityIndex(likeGraph, 20, 100);
+        index.rebuild();
+        assertArrayEquals(new int[]{2}, index.getSimilar(1, 10), "Неверный список похожих фильмов");
+
+        filmService.addLike(3, 1);
+        index.onLikeChanged(3, 1);
+        assertArrayEquals(new int[]{2}, index.getSimilar(1, 10), "Ожидалась прежняя строка");
+
+        index.refreshDirty();
+        assertArrayEquals(new int[]{2, 3}, index.getSimilar(1, 10), "Строка должна пересчитаться в фоне");
+    }
+
+    // ---------------------------------------------
+    //  ШАБЛОНЫ
+    // ---------------------------------------------
+
+    private void addFilmsAndUsers(int films, int users) {
+        for (int i = 1; i <= films; i++) {
+            Film film = new Film();
+            film.setName("Movie " + i);
+            filmStorage.add(film);
+        }
+        for (int i = 1; i <= users; i++) {
+            User user = new User();
+            user.setEmail("user" + i + "@example.com");
+            user.setLogin("user" + i);
+            user.setName("user" + i);
+            userStorage.add(user);
+        }
+    }
+
+    private List<Integer> getIds(List<Film> films) {
+        return films.stream().map(Film::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,177 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.exception.EntityNotFoundException;
+import ru.yandex.practicum.filmorate.model.MutualFriends;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.impl.UserDbStorage;
+
+import javax.validation.ValidationException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class FriendGraphTest {
+
+    private final FriendGraph friendGraph;
+    private final UserDbStorage userStorage;
+    private final UserService userService;
+
+    // построить граф по таблице FRIENDS
+    @Test
+    void rebuildFromDatabase() {
+        for (int i = 1; i <= 4; i++) {
+            userStorage.add(createUser("user" + i));
+        }
+        userStorage.addFriend(1, 4);
+        userStorage.addFriend(1, 2);
+        userStorage.addFriend(3, 2);
+        userStorage.addFriend(3, 4);
+
+        friendGraph.rebuild();
+
+        assertArrayEquals(new int[]{2, 4}, friendGraph.getFriends(1), "Неверный список друзей");
+        assertArrayEquals(new int[0], friendGraph.getFriends(2), "Дружба не должна быть взаимной");
+        assertArrayEquals(new int[]{1, 3}, friendGraph.getFollowers(2), "Неверный список обратных связей");
+        assertArrayEquals(new int[]{2, 4}, friendGraph.getCommonFriends(1, 3), "Неверный список общих друзей");
+    }
+
+    // одновременные добавления и удаления одной дружбы оставляют граф в том же состоянии, что и база
+    @Test
+    void concurrentTogglesMatchDatabase() throws InterruptedException {
+        userStorage.add(createUser("user1"));
+        userStorage.add(createUser("user2"));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int i = 0; i < 200; i++) {
+            boolean add = i % 2 == 0;
+            executor.execute(() -> {
+                if (add) {
+                    userService.addFriend(1, 2);
+                } else {
+                    userService.removeFriend(1, 2);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS), "Операции не завершились");
+
+        int[] expected = userStorage.getFriendIds(1).stream().mapToInt(Integer::intValue).toArray();
+        assertArrayEquals(expected, friendGraph.getFriends(1), "Граф должен совпадать с базой");
+    }
+
+    // изменить граф при добавлении и удалении друзей
+    @Test
+    void addAndRemoveFriends() {
+        friendGraph.addFriend(1, 5);
+        friendGraph.addFriend(1, 3);
+        friendGraph.addFriend(1, 3);
+        friendGraph.addFriend(2, 3);
+        friendGraph.addFriend(2, 4);
+        friendGraph.removeFriend(1, 5);
+        friendGraph.removeFriend(1, 7);
+
+        assertArrayEquals(new int[]{3}, friendGraph.getFriends(1), "Неверный список друзей");
+        assertArrayEquals(new int[]{1, 2}, friendGraph.getFollowers(3), "Неверный список обратных связей");
+        assertArrayEquals(new int[0], friendGraph.getFollowers(5), "Обратных связей быть не должно");
+        assertArrayEquals(new int[]{3}, friendGraph.getCommonFriends(1, 2), "Неверный список общих друзей");
+        assertArrayEquals(new int[0], friendGraph.getCommonFriends(1, 9), "Общих друзей быть не должно");
+    }
+
+    // общие друзья через сервис: граф обновляется при добавлении и удалении друзей
+    @Test
+    void commonFriendsFollowFriendChanges() {
+        for (int i = 1; i <= 4; i++) {
+            userService.add(createUser("user" + i));
+        }
+        userService.addFriend(1, 3);
+        userService.addFriend(1, 4);
+        userService.addFriend(2, 4);
+        userService.addFriend(2, 3);
+        userService.removeFriend(2, 3);
+
+        List<User> common = userService.getCommonFriends(1, 2, true);
+
+        assertEquals(List.of(4), common.stream().map(User::getId).collect(Collectors.toList()),
+                "Неверный список общих друзей");
+    }
+
+    // общие друзья нескольких пользователей с сильно различающимися списками друзей
+    @Test
+    void commonFriendsOfGroup() {
+        for (int friendId = 100; friendId < 20_100; friendId++) {
+            friendGraph.addFriend(1, friendId);
+            if (friendId % 2 == 0) {
+                friendGraph.addFriend(2, friendId);
+            }
+        }
+        friendGraph.addFriend(3, 5);
+        friendGraph.addFriend(3, 150);
+        friendGraph.addFriend(3, 151);
+        friendGraph.addFriend(3, 20_000);
+        friendGraph.addFriend(3, 30_000);
+
+        assertArrayEquals(new int[]{150, 20_000}, friendGraph.getCommonFriends(new int[]{1, 2, 3}),
+                "Неверный список общих друзей");
+        assertEquals(2, friendGraph.countCommonFriends(new int[]{1, 2, 3}), "Неверное число общих друзей");
+        assertEquals(10_000, friendGraph.countCommonFriends(new int[]{1, 2}), "Неверное число общих друзей");
+        assertEquals(0, friendGraph.countCommonFriends(new int[]{1, 2, 4}), "Общих друзей быть не должно");
+    }
+
+    // общие друзья группы и попарные счетчики через сервис
+    @Test
+    void mutualFriendsOfGroup() {
+        for (int i = 1; i <= 5; i++) {
+            userService.add(createUser("user" + i));
+        }
+        userService.addFriend(1, 4);
+        userService.addFriend(1, 5);
+        userService.addFriend(2, 4);
+        userService.addFriend(2, 5);
+        userService.addFriend(3, 5);
+
+        List<User> common = userService.getCommonFriends(List.of(1, 2, 3), false);
+        MutualFriends count = userService.countCommonFriends(List.of(1, 2));
+        List<MutualFriends> pairs = userService.countMutualFriends(List.of(1, 2, 3));
+
+        assertEquals(List.of(5), common.stream().map(User::getId).collect(Collectors.toList()),
+                "Неверный список общих друзей");
+        assertEquals(2, count.getCount(), "Неверное число общих друзей");
+        assertEquals(List.of(2, 1, 1), pairs.stream().map(MutualFriends::getCount).collect(Collectors.toList()),
+                "Неверные попарные счетчики");
+        assertEquals(List.of(1, 3), pairs.get(1).getUserIds(), "Неверная пара пользователей");
+        assertThrows(ValidationException.class, () -> userService.countCommonFriends(List.of(1, 1)),
+                "Группа из одного пользователя должна отклоняться");
+        assertThrows(EntityNotFoundException.class, () -> userService.countCommonFriends(List.of(1, 99)),
+                "Неизвестный пользователь должен отклоняться");
+    }
+
+
+    // ---------------------------------------------
+    //  ШАБЛОНЫ
+    // ---------------------------------------------
+
+    private User createUser(String login) {
+        User user = new User();
+        user.setEmail(login + "@example.com");
+        user.setLogin(login);
+        user.setName(login);
+        return user;
+    }
+}
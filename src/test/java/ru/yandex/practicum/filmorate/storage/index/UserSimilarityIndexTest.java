@@ -0,0 +1,154 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.SimilarUser;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class UserSimilarityIndexTest {
+
+    private final FilmService filmService;
+    private final UserService userService;
+    private final JdbcTemplate jdbcTemplate;
+
+    // похожие пользователи по убыванию сходства Жаккара, с учетом новых и удаленных лайков
+    @Test
+    void similarUsersFollowLikeChanges() {
+        for (int i = 1; i <= 4; i++) {
+            Film film = new Film();
+            film.setName("Movie " + i);
+            filmService.add(film);
+            User user = new User();
+            user.setEmail("user" + i + "@example.com");
+            user.setLogin("user" + i);
+            user.setName("user" + i);
+            userService.add(user);
+        }
+        for (int filmId = 1; filmId <= 4; filmId++) {
+            filmService.addLike(filmId, 1);
+            filmService.addLike(filmId, 2);
+        }
+        filmService.addLike(1, 3);
+        filmService.addLike(2, 3);
+        filmService.addLike(3, 3);
+
+        List<SimilarUser> similar = userService.getSimilarUsers(1, 10);
+        assertEquals(List.of(2, 3), getIds(similar), "Неверный порядок похожих пользователей");
+        assertEquals(1.0, similar.get(0).getSimilarity(), "Неверное сходство");
+        assertEquals(0.75, similar.get(1).getSimilarity(), "Неверное сходство");
+
+        filmService.addLike(4, 3);
+        filmService.removeLike(4, 2);
+        assertEquals(List.of(3, 2), getIds(userService.getSimilarUsers(1, 10)),
+                "Похожие пользователи должны учитывать изменения лайков");
+    }
+
+    // заполненные корзины ограничены по размеру и не участвуют в поиске
+    @Test
+    void oversizedBucketsAreSkipped() {
+        final LikeGraph likeGraph = new LikeGraph(jdbcTemplate);
+        for (int userId = 1; userId <= 5; userId++) {
+            likeGraph.addLike(1, userId);
+        }
+        likeGraph.addLike(2, 1);
+        likeGraph.addLike(2, 2);
+        final UserSimilarityIndex index = new UserSimilarityIndex(likeGraph, 32, 2, 2000, 200, 3);
+        index.rebuild();
+
+        assertEquals(List.of(), index.getSimilar(3, 10), "Заполненная корзина должна пропускаться");
+        assertEquals(List.of(2), index.getSimilar(1, 10).stream()
+                .map(UserSimilarityIndex.Match::getUserId).collect(Collectors.toList()),
+                "Кандидаты из незаполненных корзин должны находиться");
+
+        likeGraph.addLike(1, 6);
+        index.onLikesChanged(6);
+        assertEquals(List.of(), index.getSimilar(6, 10), "Заполненная корзина не должна расти");
+    }
+
+    // полнота LSH-поиска относительно полного перебора на синтетических вкусах:
+    // пользователи одной группы лайкают в основном фильмы своей группы
+    @Test
+    void recallAgainstBruteForce() {
+        final int users = 3000;
+        final int clusters = 30;
+        final int clusterFilms = 25;
+        final int films = 2000;
+        final int count = 10;
+        final Random random = new Random(7);
+        final LikeGraph likeGraph = new LikeGraph(jdbcTemplate);
+        for (int userId = 1; userId <= users; userId++) {
+            int firstClusterFilm = (userId % clusters) * clusterFilms + 1;
+            for (int i = 0; i < 20; i++) {
+                likeGraph.addLike(firstClusterFilm + random.nextInt(clusterFilms), userId);
+            }
+            for (int i = 0; i < 4; i++) {
+                likeGraph.addLike(1 + random.nextInt(films), userId);
+            }
+        }
+        final UserSimilarityIndex index = new UserSimilarityIndex(likeGraph, 32, 2, 2000, 200, 1000);
+
+        final long startedAt = System.nanoTime();
+        index.rebuild();
+        final long builtAt = System.nanoTime();
+
+        int found = 0;
+        int expected = 0;
+        long queryNanos = 0;
+        for (int userId = 1; userId <= users; userId += users / 100) {
+            final int[] likedFilms = likeGraph.getLikedFilms(userId);
+            final double[] exact = new double[users];
+            for (int otherId = 1; otherId <= users; otherId++) {
+                exact[otherId - 1] = otherId == userId
+                        ? 0 : UserSimilarityIndex.jaccard(likedFilms, likeGraph.getLikedFilms(otherId));
+            }
+            final double[] sorted = exact.clone();
+            Arrays.sort(sorted);
+            final double threshold = sorted[sorted.length - count];
+
+            final long queryStartedAt = System.nanoTime();
+            final List<UserSimilarityIndex.Match> matches = index.getSimilar(userId, count);
+            queryNanos += System.nanoTime() - queryStartedAt;
+
+            // при равном сходстве подходит любой из равных, поэтому сравниваем с порогом top-K
+            for (UserSimilarityIndex.Match match : matches) {
+                if (match.getSimilarity() >= threshold) {
+                    found++;
+                }
+            }
+            expected += count;
+        }
+        final double recall = (double) found / expected;
+
+        assertTrue(recall >= 0.9, String.format(
+                "Полнота поиска слишком низкая: %d пользователей, построение %d мс, запрос %.2f мс, recall@%d %.3f",
+                users, (builtAt - startedAt) / 1_000_000, queryNanos / 100 / 1_000_000.0, count, recall));
+    }
+
+    // ---------------------------------------------
+    //  ШАБЛОНЫ
+    // ---------------------------------------------
+
+    private List<Integer> getIds(List<SimilarUser> similarUsers) {
+        return similarUsers.stream().map(similarUser -> similarUser.getUser().getId()).collect(Collectors.toList());
+    }
+}